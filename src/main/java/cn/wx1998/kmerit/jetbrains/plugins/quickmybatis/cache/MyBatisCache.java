@@ -6,6 +6,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -14,14 +15,34 @@ public interface MyBatisCache {
 
     void addJavaElementMapping(@NotNull List<JavaElementInfo> javaElementInfoList);
 
+    /**
+     * 添加Java元素映射，文件摘要已由调用方计算好（全量刷新的流水线在单独的阶段计算摘要）
+     */
+    void addJavaElementMapping(@NotNull List<JavaElementInfo> javaElementInfoList, @NotNull Map<String, String> fileDigests);
+
     void addXmlElementMapping(@NotNull List<XmlElementInfo> xmlElementInfoList);
 
+    /**
+     * 添加XML元素映射，文件摘要已由调用方计算好（全量刷新的流水线在单独的阶段计算摘要）
+     */
+    void addXmlElementMapping(@NotNull List<XmlElementInfo> xmlElementInfoList, @NotNull Map<String, String> fileDigests);
+
     @NotNull Set<JavaElementInfo> getJavaElementsBySqlId(@NotNull String sqlId);
 
     @NotNull Set<XmlElementInfo> getXmlElementsBySqlId(@NotNull String sqlId);
 
+    @NotNull Set<JavaElementInfo> getJavaElementsByNamespace(@NotNull String namespace);
+
+    @NotNull Map<String, Set<JavaElementInfo>> getJavaElementsBySqlIds(@NotNull Collection<String> sqlIds);
+
+    @NotNull Map<String, Set<XmlElementInfo>> getXmlElementsBySqlIds(@NotNull Collection<String> sqlIds);
+
     @NotNull Set<String> getSqlIdsByJavaFile(@NotNull String javaFilePath);
 
+    @NotNull Set<JavaElementInfo> getJavaElementsByFile(@NotNull String javaFilePath);
+
+    @NotNull Set<Integer> getJavaElementOffsetsByFile(@NotNull String javaFilePath, @NotNull String elementType);
+
     @NotNull Set<String> getSqlIdsByXmlFile(@NotNull String xmlFilePath);
 
     int saveFileDigest(@NotNull VirtualFile file, @NotNull String digest);
@@ -30,6 +51,10 @@ public interface MyBatisCache {
 
     @Nullable Map<String, String> getAllFileDigest();
 
+    @NotNull Map<String, Long> getAllParseCosts();
+
+    void saveParseCosts(@NotNull Map<String, Long> parseCosts);
+
     int clearJavaFileCache(@NotNull String javaFilePath);
 
     int clearXmlFileCache(@NotNull String xmlFilePath);
@@ -42,6 +67,8 @@ public interface MyBatisCache {
 
     Set<String> getAllSqlIdByFilePath(String filePath);
 
+    Set<String> getAllXmlSqlIds();
+
     Set<String> getAllFilePathsBySqlIdList(Set<String> stringSet);
 
     int removeBySqlIdList(Set<String> sqlIdList);
@@ -0,0 +1,182 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.setting.MyPluginSettings;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.psi.search.UsageSearchContext;
+import com.intellij.ui.classFilter.ClassFilter;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 缓存子系统的延迟激活
+ * <p>
+ * 项目打开时不创建缓存管理器（H2 数据库、连接池、定时扫描、文件监听），只在以下情况激活：
+ * <ul>
+ *     <li>项目之前激活过（激活时在项目配置中记录；旧版本在所有项目中都创建了缓存数据库，数据库文件本身不能说明项目使用 MyBatis）</li>
+ *     <li>索引探测发现 MyBatis：项目 XML 中出现 mybatis / ibatis（Mapper DTD、配置文件），
+ *     或项目 Java 代码中出现配置的 SqlSession 类名；只查询单词索引，不构建 PSI</li>
+ *     <li>打开了 Mapper XML（行标记计算时判断），或手动刷新缓存</li>
+ * </ul>
+ * 未激活时每次索引更新结束后重新探测，与 MyBatis 无关的项目不承担启动开销
+ */
+public final class MyBatisCacheActivation implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(MyBatisCacheActivation.class);
+
+    /**
+     * 项目配置中记录已激活的键
+     */
+    private static final String ACTIVATED_KEY = "cn.wx1998.kmerit.quickmybatis.cacheActivated";
+
+    /**
+     * Mapper XML 和 MyBatis 配置文件中一定出现的单词（DTD、命名空间）
+     */
+    private static final String[] XML_WORDS = {"mybatis", "ibatis"};
+
+    private final Project project;
+
+    /**
+     * 是否已经开始激活
+     */
+    private final AtomicBoolean activated = new AtomicBoolean();
+
+    /**
+     * 是否有进行中的探测
+     */
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    public MyBatisCacheActivation(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static MyBatisCacheActivation getInstance(@NotNull Project project) {
+        return project.getService(MyBatisCacheActivation.class);
+    }
+
+    /**
+     * 缓存子系统是否已可用（缓存管理器已创建）
+     */
+    public boolean isActive() {
+        return project.getServiceIfCreated(MyBatisCacheManagerDefault.class) != null;
+    }
+
+    /**
+     * 项目打开时调用：之前激活过时直接激活，否则在索引就绪后探测，之后每次索引更新结束后重新探测
+     */
+    public void startup() {
+        if (PropertiesComponent.getInstance(project).getBoolean(ACTIVATED_KEY)) {
+            activate("项目之前激活过缓存");
+            return;
+        }
+        project.getMessageBus().connect(this).subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+            @Override
+            public void exitDumbMode() {
+                probe();
+            }
+        });
+        probe();
+    }
+
+    /**
+     * 激活缓存子系统：在后台创建缓存管理器，完成后重新分析打开的文件
+     *
+     * @param reason 激活原因（日志）
+     */
+    public void activate(@NotNull String reason) {
+        if (!activated.compareAndSet(false, true)) {
+            return;
+        }
+        LOG.info("激活 MyBatis 缓存: " + reason + "，项目: " + project.getName());
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+            MyBatisCacheManagerFactory.getRecommendedParser(project);
+            // 激活时检查一次缓存状态，之后只在缓存写入后检查
+            MyBatisCacheHealth.getInstance(project).scheduleEvaluation();
+            // 激活前计算的行标记为空，重新分析打开的文件
+            ApplicationManager.getApplication().invokeLater(() -> DaemonCodeAnalyzer.getInstance(project).restart(), project.getDisposed());
+        });
+    }
+
+    /**
+     * 缓存管理器已创建（激活或手动刷新缓存）：之后不再探测，并记录到项目配置中，下次打开项目时直接激活
+     */
+    void markActivated() {
+        activated.set(true);
+        PropertiesComponent.getInstance(project).setValue(ACTIVATED_KEY, true);
+    }
+
+    /**
+     * 在索引就绪后于后台探测项目是否使用 MyBatis（可被写操作打断）
+     */
+    private void probe() {
+        if (activated.get() || !probing.compareAndSet(false, true)) {
+            return;
+        }
+        ReadAction.nonBlocking(this::detect).inSmartMode(project).expireWith(this).submit(AppExecutorUtil.getAppExecutorService()).onSuccess(found -> {
+            if (found != null) {
+                activate(found);
+            }
+        }).onProcessed(ignored -> probing.set(false));
+    }
+
+    /**
+     * 查询单词索引判断项目是否使用 MyBatis
+     *
+     * @return 发现的依据，未发现时返回 null
+     */
+    @Nullable
+    private String detect() {
+        PsiSearchHelper searchHelper = PsiSearchHelper.getInstance(project);
+        GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
+        GlobalSearchScope xmlScope = GlobalSearchScope.getScopeRestrictedByFileTypes(projectScope, XmlFileType.INSTANCE);
+        for (String word : XML_WORDS) {
+            if (containsWord(searchHelper, xmlScope, word)) {
+                return "XML 中出现 " + word;
+            }
+        }
+        ClassFilter[] classFilters = MyPluginSettings.getInstance().getClassFilters();
+        if (classFilters != null) {
+            GlobalSearchScope javaScope = GlobalSearchScope.getScopeRestrictedByFileTypes(projectScope, JavaFileType.INSTANCE);
+            for (ClassFilter classFilter : classFilters) {
+                String pattern = classFilter.getPattern();
+                if (pattern == null || pattern.trim().isEmpty()) {
+                    continue;
+                }
+                String shortName = pattern.substring(pattern.lastIndexOf('.') + 1).trim();
+                if (!shortName.isEmpty() && containsWord(searchHelper, javaScope, shortName)) {
+                    return "Java 代码中出现 " + shortName;
+                }
+            }
+        }
+        LOG.debug("项目中未发现 MyBatis，暂不激活缓存: " + project.getName());
+        return null;
+    }
+
+    private static boolean containsWord(@NotNull PsiSearchHelper searchHelper, @NotNull GlobalSearchScope scope, @NotNull String word) {
+        // 找到第一个文件即停止
+        return !searchHelper.processCandidateFilesForText(scope, UsageSearchContext.ANY, true, word, file -> false);
+    }
+
+    /**
+     * 项目关闭时释放，索引更新监听随之断开
+     */
+    @Override
+    public void dispose() {
+    }
+}
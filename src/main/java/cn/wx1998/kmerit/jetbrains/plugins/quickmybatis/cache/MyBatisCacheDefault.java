@@ -3,14 +3,18 @@ package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.db.CacheDao;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.JavaElementInfo;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.ProjectFileUtils;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.LowMemoryWatcher;
 import org.apache.commons.collections.CollectionUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,34 +22,72 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
  * MyBatis缓存类默认实现
+ * <p>
+ * IDE 内存不足时丢弃行标记的内存快照，降级期内行标记直接读取数据库（{@link MyBatisCacheSnapshot#getForGutter}）
  */
-public class MyBatisCacheDefault implements MyBatisCache {
+public class MyBatisCacheDefault implements MyBatisCache, Disposable {
 
     private static final Logger LOG = Logger.getInstance(MyBatisCacheDefault.class);
+
+    /**
+     * 单次写入涉及的 SQL ID 超过该数量时（全量刷新的批量写入）直接递增所有文件的代数，不再逐个查询关联文件
+     */
+    private static final int MAX_TRACKED_SQL_IDS = 500;
+
+    /**
+     * 缓存操作（按项目隔离，每个项目使用自己的数据源）
+     */
+    private final CacheDao cacheDao;
+
     /**
-     * 单例模式（按项目隔离缓存）
+     * 行标记使用的内存快照，缓存写入后需要通知其失效
      */
-    private static final Map<Project, MyBatisCacheDefault> INSTANCES = new ConcurrentHashMap<>();
+    private final MyBatisCacheSnapshot snapshot;
 
     /**
-     * 缓存操作
+     * 按文件记录的缓存代数，缓存写入后递增相关文件的代数
      */
-    private static CacheDao cacheDao;
+    private final MyBatisFileGenerations generations;
 
     /**
-     * 私有构造器
+     * 缓存健康状态，写入后更新各表的行数并触发健康检查
      */
-    private MyBatisCacheDefault() {
+    private final MyBatisCacheHealth health;
+
+    /**
+     * 项目服务构造器，由平台创建，随项目释放
+     */
+    public MyBatisCacheDefault(@NotNull Project project) {
+        this.cacheDao = new CacheDao(project);
+        this.snapshot = MyBatisCacheSnapshot.getInstance(project);
+        this.generations = MyBatisFileGenerations.getInstance(project);
+        this.health = MyBatisCacheHealth.getInstance(project);
+        // 监听随服务释放注销
+        LowMemoryWatcher.register(this::onLowMemory, this);
+    }
+
+    /**
+     * 内存不足：丢弃内存快照，之后一段时间内行标记直接读取数据库
+     */
+    private void onLowMemory() {
+        int dropped = snapshot.dropAll();
+        health.lowMemory(dropped);
+        LOG.info("IDE 内存不足，丢弃缓存快照 " + dropped + " 条，行标记暂时直接读取数据库；" + health.getMemoryPressureStatistics());
+    }
+
+    /**
+     * 项目关闭时释放，内存不足监听随之注销
+     */
+    @Override
+    public void dispose() {
     }
 
     public static MyBatisCacheDefault getInstance(@NotNull Project project) {
-        cacheDao = new CacheDao(project);
-        return INSTANCES.computeIfAbsent(project, k -> new MyBatisCacheDefault());
+        return project.getService(MyBatisCacheDefault.class);
     }
 
     /**
@@ -53,17 +95,33 @@ public class MyBatisCacheDefault implements MyBatisCache {
      */
     @Override
     public void addJavaElementMapping(@NotNull List<JavaElementInfo> javaElementInfoList) {
+        Set<String> uniqueFilePaths = javaElementInfoList.stream().map(JavaElementInfo::getFilePath).filter(Objects::nonNull).filter(path -> !path.trim().isEmpty()).collect(Collectors.toSet());
+        long time1 = System.currentTimeMillis();
+        Map<String, String> fileMap = ProjectFileUtils.calculateFileDigestsParallel(uniqueFilePaths);
+        LOG.debug((System.currentTimeMillis() - time1) + "ms,addJavaElementMapping.digest.calculateFileDigest:fileMap.size=" + fileMap.size());
+        addJavaElementMapping(javaElementInfoList, fileMap);
+    }
+
+    /**
+     * 添加SQL ID与Java元素的映射（文件摘要已计算好）
+     */
+    @Override
+    public void addJavaElementMapping(@NotNull List<JavaElementInfo> javaElementInfoList, @NotNull Map<String, String> fileMap) {
         long time1 = System.currentTimeMillis();
-        int count1 = cacheDao.batchInsertJavaElementInfo(javaElementInfoList);
+        // 方法调用单独插入，以便分别统计新增的行数
+        Map<Boolean, List<JavaElementInfo>> partitioned = javaElementInfoList.stream().collect(Collectors.partitioningBy(info -> JavaService.TYPE_METHOD_CALL.equals(info.getElementType())));
+        int methodCallCount = cacheDao.batchInsertJavaElementInfo(partitioned.get(true));
+        int count1 = cacheDao.batchInsertJavaElementInfo(partitioned.get(false)) + methodCallCount;
+        health.addJavaElements(count1, methodCallCount);
+        bumpGenerations(javaElementInfoList.stream().map(JavaElementInfo::getSqlId).collect(Collectors.toSet()), javaElementInfoList.stream().map(JavaElementInfo::getFilePath).collect(Collectors.toSet()));
+        snapshot.invalidate();
         long time2 = System.currentTimeMillis();
         LOG.debug((time2 - time1) + "ms,addJavaElementMapping.javaElementDao.batchInsert:javaElementInfoList.size=" + javaElementInfoList.size() + ",count1=" + count1);
-        Set<String> uniqueFilePaths = javaElementInfoList.stream().map(JavaElementInfo::getFilePath).filter(Objects::nonNull).filter(path -> !path.trim().isEmpty()).collect(Collectors.toSet());
-        Map<String, String> fileMap = ProjectFileUtils.calculateFileDigestsParallel(uniqueFilePaths);
-        long time3 = System.currentTimeMillis();
-        LOG.debug((time3 - time2) + "ms,addJavaElementMapping.digest.calculateFileDigest:fileMap.size=" + fileMap.size());
         int count2 = cacheDao.batchInsertFileDigest(fileMap);
-        long time4 = System.currentTimeMillis();
-        LOG.debug((time4 - time3) + "ms,addJavaElementMapping.fileDigestDao.batchInsert:fileMap.size=" + fileMap.size() + ",count2=" + count2);
+        health.addFileDigests(count2);
+        health.scheduleEvaluation();
+        long time3 = System.currentTimeMillis();
+        LOG.debug((time3 - time2) + "ms,addJavaElementMapping.fileDigestDao.batchInsert:fileMap.size=" + fileMap.size() + ",count2=" + count2);
     }
 
     /**
@@ -76,6 +134,29 @@ public class MyBatisCacheDefault implements MyBatisCache {
         return javaElementInfos.isEmpty() ? Collections.emptySet() : new HashSet<>(javaElementInfos);
     }
 
+    /**
+     * 根据 mapper 的 namespace 获取关联的Java元素（走 element_java 唯一索引的 sql_id 前缀，只读取该 namespace 的记录）
+     */
+    @NotNull
+    @Override
+    public Set<JavaElementInfo> getJavaElementsByNamespace(@NotNull String namespace) {
+        List<JavaElementInfo> javaElementInfos = cacheDao.getJavaElementsByNamespace(namespace);
+        return javaElementInfos.isEmpty() ? Collections.emptySet() : new HashSet<>(javaElementInfos);
+    }
+
+    /**
+     * 根据多个SQL ID批量获取关联的Java元素（一次查询），按SQL ID分组
+     */
+    @NotNull
+    @Override
+    public Map<String, Set<JavaElementInfo>> getJavaElementsBySqlIds(@NotNull Collection<String> sqlIds) {
+        Map<String, Set<JavaElementInfo>> result = new HashMap<>();
+        for (JavaElementInfo info : cacheDao.getJavaElementsBySqlIds(sqlIds)) {
+            result.computeIfAbsent(info.getSqlId(), k -> new HashSet<>()).add(info);
+        }
+        return result;
+    }
+
     // ========================= SQL ID与XML元素映射操作 =========================
 
     /**
@@ -83,17 +164,30 @@ public class MyBatisCacheDefault implements MyBatisCache {
      */
     @Override
     public void addXmlElementMapping(@NotNull List<XmlElementInfo> xmlElementInfoList) {
+        Set<String> uniqueFilePaths = xmlElementInfoList.stream().map(XmlElementInfo::getFilePath).filter(Objects::nonNull).filter(path -> !path.trim().isEmpty()).collect(Collectors.toSet());
+        long time1 = System.currentTimeMillis();
+        Map<String, String> fileMap = ProjectFileUtils.calculateFileDigestsParallel(uniqueFilePaths);
+        LOG.debug((System.currentTimeMillis() - time1) + "ms,addXmlElementMapping.digest.calculateFileDigest:fileMap.size=" + fileMap.size());
+        addXmlElementMapping(xmlElementInfoList, fileMap);
+    }
+
+    /**
+     * 添加SQL ID与XML元素的映射（文件摘要已计算好）
+     */
+    @Override
+    public void addXmlElementMapping(@NotNull List<XmlElementInfo> xmlElementInfoList, @NotNull Map<String, String> fileMap) {
         long time1 = System.currentTimeMillis();
         int count1 = cacheDao.batchInsertXmlElementInfo(xmlElementInfoList);
+        health.addXmlElements(count1);
+        bumpGenerations(xmlElementInfoList.stream().map(XmlElementInfo::getSqlId).collect(Collectors.toSet()), xmlElementInfoList.stream().map(XmlElementInfo::getFilePath).collect(Collectors.toSet()));
+        snapshot.invalidate();
         long time2 = System.currentTimeMillis();
         LOG.debug((time2 - time1) + "ms,addXmlElementMapping.xmlElementDao.batchInsert:xmlElementInfoList.size=" + xmlElementInfoList.size() + ",count1=" + count1);
-        Set<String> uniqueFilePaths = xmlElementInfoList.stream().map(XmlElementInfo::getFilePath).filter(Objects::nonNull).filter(path -> !path.trim().isEmpty()).collect(Collectors.toSet());
-        Map<String, String> fileMap = ProjectFileUtils.calculateFileDigestsParallel(uniqueFilePaths);
-        long time3 = System.currentTimeMillis();
-        LOG.debug((time3 - time2) + "ms,addXmlElementMapping.digest.calculateFileDigest:fileMap.size=" + fileMap.size());
         int count2 = cacheDao.batchInsertFileDigest(fileMap);
-        long time4 = System.currentTimeMillis();
-        LOG.debug((time4 - time3) + "ms,addXmlElementMapping.fileDigestDao.batchInsert:fileMap.size=" + fileMap.size() + ",count2=" + count2);
+        health.addFileDigests(count2);
+        health.scheduleEvaluation();
+        long time3 = System.currentTimeMillis();
+        LOG.debug((time3 - time2) + "ms,addXmlElementMapping.fileDigestDao.batchInsert:fileMap.size=" + fileMap.size() + ",count2=" + count2);
     }
 
     /**
@@ -106,6 +200,19 @@ public class MyBatisCacheDefault implements MyBatisCache {
         return xmlElementsBySqlId.isEmpty() ? Collections.emptySet() : new HashSet<>(xmlElementsBySqlId);
     }
 
+    /**
+     * 根据多个SQL ID批量获取关联的XML元素（一次查询），按SQL ID分组
+     */
+    @NotNull
+    @Override
+    public Map<String, Set<XmlElementInfo>> getXmlElementsBySqlIds(@NotNull Collection<String> sqlIds) {
+        Map<String, Set<XmlElementInfo>> result = new HashMap<>();
+        for (XmlElementInfo info : cacheDao.getXmlElementsBySqlIds(sqlIds)) {
+            result.computeIfAbsent(info.getSqlId(), k -> new HashSet<>()).add(info);
+        }
+        return result;
+    }
+
     // ========================= 文件与SQL ID的映射操作 =========================
 
     /**
@@ -117,6 +224,25 @@ public class MyBatisCacheDefault implements MyBatisCache {
         return cacheDao.getSqlIdsByJavaFile(javaFilePath);
     }
 
+    /**
+     * 获取Java文件中的所有缓存元素
+     */
+    @NotNull
+    @Override
+    public Set<JavaElementInfo> getJavaElementsByFile(@NotNull String javaFilePath) {
+        List<JavaElementInfo> javaElementInfos = cacheDao.getJavaElementsByFile(javaFilePath);
+        return javaElementInfos.isEmpty() ? Collections.emptySet() : new HashSet<>(javaElementInfos);
+    }
+
+    /**
+     * 获取Java文件中指定类型元素的起始偏移量
+     */
+    @NotNull
+    @Override
+    public Set<Integer> getJavaElementOffsetsByFile(@NotNull String javaFilePath, @NotNull String elementType) {
+        return cacheDao.getJavaElementOffsetsByFile(javaFilePath, elementType);
+    }
+
     /**
      * 获取XML文件包含的所有SQL ID
      */
@@ -134,7 +260,9 @@ public class MyBatisCacheDefault implements MyBatisCache {
     @Override
     public int saveFileDigest(@NotNull VirtualFile file, @NotNull String digest) {
         String path = file.getPath();
-        return cacheDao.saveFileDigest(path, digest);
+        int count = cacheDao.saveFileDigest(path, digest);
+        health.addFileDigests(count);
+        return count;
     }
 
     /**
@@ -156,12 +284,37 @@ public class MyBatisCacheDefault implements MyBatisCache {
         return cacheDao.getAllFileDigest();
     }
 
+    /**
+     * 获取所有文件上次解析的耗时（微秒）
+     */
+    @NotNull
+    @Override
+    public Map<String, Long> getAllParseCosts() {
+        return cacheDao.getAllParseCosts();
+    }
+
+    /**
+     * 保存文件的解析耗时（微秒），供下次全量刷新安排解析顺序
+     */
+    @Override
+    public void saveParseCosts(@NotNull Map<String, Long> parseCosts) {
+        cacheDao.saveParseCosts(parseCosts);
+    }
+
     /**
      * 清除指定Java文件的所有缓存映射
      */
     @Override
     public int clearJavaFileCache(@NotNull String javaFilePath) {
-        return cacheDao.clearJavaFileCache(javaFilePath);
+        Set<String> sqlIds = cacheDao.getSqlIdsByJavaFile(javaFilePath);
+        // 方法调用单独删除，以便分别统计删除的行数
+        int methodCallCount = cacheDao.clearJavaFileCache(javaFilePath, JavaService.TYPE_METHOD_CALL);
+        int count = cacheDao.clearJavaFileCache(javaFilePath) + methodCallCount;
+        health.removeJavaElements(count, methodCallCount);
+        health.scheduleEvaluation();
+        bumpGenerations(sqlIds, Set.of(javaFilePath));
+        snapshot.invalidate();
+        return count;
     }
 
     /**
@@ -169,7 +322,13 @@ public class MyBatisCacheDefault implements MyBatisCache {
      */
     @Override
     public int clearXmlFileCache(@NotNull String xmlFilePath) {
-        return cacheDao.clearXmlFileCache(xmlFilePath);
+        Set<String> sqlIds = cacheDao.getSqlIdsByXmlFile(xmlFilePath);
+        int count = cacheDao.clearXmlFileCache(xmlFilePath);
+        health.addXmlElements(-count);
+        health.scheduleEvaluation();
+        bumpGenerations(sqlIds, Set.of(xmlFilePath));
+        snapshot.invalidate();
+        return count;
     }
 
     /**
@@ -177,12 +336,17 @@ public class MyBatisCacheDefault implements MyBatisCache {
      */
     @Override
     public int clearCache(MyBatisCacheRefreshRange cacheRefreshRange) {
-        return switch (cacheRefreshRange) {
+        int count = switch (cacheRefreshRange) {
             case XML -> cacheDao.clearAllXmlElement();
             case JAVA -> cacheDao.clearAllJavaElement();
             case JAVA_METHOD_CALL -> cacheDao.clearAllJavaMethodCallElement();
             case ALL -> cacheDao.clearAll();
         };
+        health.cleared(cacheRefreshRange);
+        health.scheduleEvaluation();
+        generations.bumpAll();
+        snapshot.invalidate();
+        return count;
     }
 
     /**
@@ -230,6 +394,14 @@ public class MyBatisCacheDefault implements MyBatisCache {
         return cacheDao.getAllSqlIdByFilePath(filePath);
     }
 
+    /**
+     * 获取 XML 中所有的 SQL ID（包含 mapper 的 namespace）
+     */
+    @Override
+    public Set<String> getAllXmlSqlIds() {
+        return cacheDao.getAllXmlSqlIds();
+    }
+
     @Override
     public Set<String> getAllFilePathsBySqlIdList(Set<String> stringSet) {
         return cacheDao.getAllFilePathsBySqlIdList(stringSet);
@@ -243,7 +415,38 @@ public class MyBatisCacheDefault implements MyBatisCache {
      */
     @Override
     public int removeBySqlIdList(Set<String> sqlIdList) {
-        return cacheDao.removeBySqlIdList(sqlIdList);
+        // 删除前记录关联的文件，删除后这些记录已不存在
+        Set<String> filePaths = sqlIdList.size() > MAX_TRACKED_SQL_IDS ? Collections.emptySet() : cacheDao.getAllFilePathsBySqlIdList(sqlIdList);
+        int count = cacheDao.removeBySqlIdList(sqlIdList);
+        // 删除的行数不区分表和类型，下次检查前重新统计
+        health.invalidateCounts();
+        health.scheduleEvaluation();
+        bumpGenerations(sqlIdList, filePaths);
+        snapshot.invalidate();
+        return count;
+    }
+
+    /**
+     * 递增与写入内容相关的文件代数：写入的文件本身，以及与这些 SQL ID（或其 namespace）有关联记录的所有文件
+     */
+    private void bumpGenerations(@NotNull Collection<String> sqlIds, @NotNull Collection<String> filePaths) {
+        if (sqlIds.size() > MAX_TRACKED_SQL_IDS) {
+            generations.bumpAll();
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        for (String sqlId : sqlIds) {
+            if (sqlId == null) continue;
+            keys.add(sqlId);
+            int index = sqlId.lastIndexOf('.');
+            if (index > 0) {
+                keys.add(sqlId.substring(0, index));
+            }
+        }
+        Set<String> affected = new HashSet<>(filePaths);
+        affected.addAll(cacheDao.getAllFilePathsBySqlIdList(keys));
+        affected.remove(null);
+        generations.bump(affected);
     }
 
     @Override
@@ -0,0 +1,218 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 缓存健康状态
+ * <p>
+ * 各表的行数由缓存写入路径增量维护，只在首次使用、无法精确计算增量（按 SQL ID 批量删除）或全量刷新结束后
+ * 才从数据库重新统计一次；健康检查只在缓存写入后触发（合并短时间内的多次写入），不再定时轮询数据库
+ * <p>
+ * 同时记录 IDE 内存不足的状态和各内存层的降级次数（{@link com.intellij.util.LowMemoryWatcher}）
+ */
+public final class MyBatisCacheHealth {
+
+    private static final Logger LOG = Logger.getInstance(MyBatisCacheHealth.class);
+
+    /**
+     * 最后一次写入后延迟执行健康检查的时间，期间的每次写入都重新计时，连续写入结束后只检查一次
+     */
+    private static final long EVALUATE_DELAY_MS = 1000;
+
+    /**
+     * 内存不足后保持降级（行标记直接读取数据库）的时间
+     */
+    private static final long MEMORY_PRESSURE_COOLDOWN_MS = 60_000;
+
+    private final Project project;
+
+    private final AtomicLong javaElements = new AtomicLong();
+    private final AtomicLong methodCalls = new AtomicLong();
+    private final AtomicLong xmlElements = new AtomicLong();
+    private final AtomicLong fileDigests = new AtomicLong();
+
+    /**
+     * 计数是否与数据库一致，不一致时下次读取前重新统计
+     */
+    private volatile boolean calibrated;
+
+    /**
+     * 待执行的健康检查，再次写入时取消后重新计时
+     */
+    private final AtomicReference<ScheduledFuture<?>> pendingEvaluation = new AtomicReference<>();
+
+    /**
+     * 最近一次内存不足的时间（纳秒），0 表示没有发生过
+     */
+    private volatile long lowMemoryAtNanos;
+
+    private final AtomicLong lowMemoryEvents = new AtomicLong();
+    private final AtomicLong droppedSnapshotEntries = new AtomicLong();
+    private final AtomicLong shrunkBatches = new AtomicLong();
+    private final AtomicLong storageFallbacks = new AtomicLong();
+
+    public MyBatisCacheHealth(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static MyBatisCacheHealth getInstance(@NotNull Project project) {
+        return project.getService(MyBatisCacheHealth.class);
+    }
+
+    // ========================= 写入路径维护的增量 =========================
+
+    public void addJavaElements(int inserted, int insertedMethodCalls) {
+        javaElements.addAndGet(inserted);
+        methodCalls.addAndGet(insertedMethodCalls);
+    }
+
+    public void removeJavaElements(int deleted, int deletedMethodCalls) {
+        javaElements.addAndGet(-deleted);
+        methodCalls.addAndGet(-deletedMethodCalls);
+    }
+
+    public void addXmlElements(int delta) {
+        xmlElements.addAndGet(delta);
+    }
+
+    public void addFileDigests(int delta) {
+        fileDigests.addAndGet(delta);
+    }
+
+    /**
+     * 清空了指定范围的缓存
+     */
+    public void cleared(@NotNull MyBatisCacheRefreshRange cacheRefreshRange) {
+        switch (cacheRefreshRange) {
+            case XML -> xmlElements.set(0);
+            case JAVA -> {
+                javaElements.set(0);
+                methodCalls.set(0);
+            }
+            case JAVA_METHOD_CALL -> javaElements.addAndGet(-methodCalls.getAndSet(0));
+            case ALL -> {
+                javaElements.set(0);
+                methodCalls.set(0);
+                xmlElements.set(0);
+                fileDigests.set(0);
+            }
+        }
+    }
+
+    /**
+     * 无法精确计算增量的写入后调用，下次读取前从数据库重新统计
+     */
+    public void invalidateCounts() {
+        calibrated = false;
+    }
+
+    // ========================= 读取 =========================
+
+    public long getJavaElementCount() {
+        ensureCalibrated();
+        return javaElements.get();
+    }
+
+    public long getMethodCallCount() {
+        ensureCalibrated();
+        return methodCalls.get();
+    }
+
+    public long getXmlElementCount() {
+        ensureCalibrated();
+        return xmlElements.get();
+    }
+
+    public long getFileDigestCount() {
+        ensureCalibrated();
+        return fileDigests.get();
+    }
+
+    private synchronized void ensureCalibrated() {
+        if (calibrated) {
+            return;
+        }
+        MyBatisCache cache = MyBatisCacheFactory.getRecommendedParser(project);
+        javaElements.set(cache.countElementJavaTable());
+        methodCalls.set(cache.countElementJavaTableByMethodCall());
+        xmlElements.set(cache.countElementXmlTable());
+        fileDigests.set(cache.countFileDigestTable());
+        calibrated = true;
+        LOG.debug("缓存计数已重新统计: " + this);
+    }
+
+    // ========================= 内存压力 =========================
+
+    /**
+     * IDE 内存不足，丢弃了内存快照中的条目
+     *
+     * @param droppedEntries 丢弃的快照条目数
+     */
+    public void lowMemory(int droppedEntries) {
+        lowMemoryAtNanos = System.nanoTime();
+        lowMemoryEvents.incrementAndGet();
+        droppedSnapshotEntries.addAndGet(droppedEntries);
+    }
+
+    /**
+     * 内存不足时刷新流水线缩小了写入批次
+     */
+    public void batchShrunk() {
+        shrunkBatches.incrementAndGet();
+    }
+
+    /**
+     * 内存不足期间行标记绕过快照直接读取数据库
+     */
+    public void storageFallback() {
+        storageFallbacks.incrementAndGet();
+    }
+
+    /**
+     * 是否处于内存不足后的降级期
+     */
+    public boolean isUnderMemoryPressure() {
+        long at = lowMemoryAtNanos;
+        return at != 0 && System.nanoTime() - at < TimeUnit.MILLISECONDS.toNanos(MEMORY_PRESSURE_COOLDOWN_MS);
+    }
+
+    @NotNull
+    public String getMemoryPressureStatistics() {
+        return "内存不足: " + lowMemoryEvents.get() + " 次，丢弃快照条目: " + droppedSnapshotEntries.get() + "，缩小写入批次: " + shrunkBatches.get() + " 次，行标记直接读库: " + storageFallbacks.get() + " 次";
+    }
+
+    // ========================= 健康检查 =========================
+
+    /**
+     * 缓存写入完成，在最后一次写入的一段时间后触发一次健康检查（防抖：每次写入取消尚未执行的检查并重新计时）
+     */
+    public void scheduleEvaluation() {
+        ScheduledFuture<?> next = AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+            try {
+                MyBatisCacheManagerFactory.getRecommendedParser(project).checkForCacheInvalidationAndNotify(project);
+            } catch (RuntimeException e) {
+                LOG.warn("缓存健康检查失败: " + e.getMessage(), e);
+            }
+        }, EVALUATE_DELAY_MS, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> previous = pendingEvaluation.getAndSet(next);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "element_java=" + javaElements.get() + ", methodCall=" + methodCalls.get() + ", element_xml=" + xmlElements.get() + ", file_digest=" + fileDigests.get();
+    }
+}
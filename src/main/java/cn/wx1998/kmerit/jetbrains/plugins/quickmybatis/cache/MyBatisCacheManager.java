@@ -125,6 +125,14 @@ public interface MyBatisCacheManager {
 
     long getCurrentCacheVersion();
 
+    /**
+     * 获取文件的缓存代数，只有与该文件相关的映射发生变化时才会递增
+     *
+     * @param filePath 文件路径
+     * @return 缓存代数
+     */
+    long getFileGeneration(@NotNull String filePath);
+
     boolean isCacheUpToDate(long lastKnownVersion);
 
     boolean checkForCacheInvalidationAndNotify(Project project);
@@ -6,17 +6,23 @@ import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.JavaParser;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.JavaParserFactory;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.MyBatisXmlParser;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.MyBatisXmlParserFactory;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.MyBatisXmlStreamParser;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
-import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.XmlService;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.DocumentOffsetTracker;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.JavaFilePrefilter;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.NotificationUtil;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.ProjectFileUtils;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.ResourceBudget;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.TagLocator;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.TargetMethodsHolder;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.TimeStrFormatter;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
@@ -25,7 +31,6 @@ import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
-import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
@@ -44,74 +49,83 @@ import com.intellij.psi.PsiManager;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiMethodCallExpression;
 import com.intellij.psi.PsiReference;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.searches.MethodReferencesSearch;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.Query;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.messages.MessageBusConnection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * 缓存管理器默认实现，基于 MyBatisCacheDefault 管理缓存生命周期
  * 负责缓存的创建、更新、失效、扫描和统计
  */
-public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
+public class MyBatisCacheManagerDefault implements MyBatisCacheManager, Disposable {
     // 日志前缀
     private static final String CACHE_LOG_PREFIX = "[MyBatis缓存管理器] ";
-    // 单例键（按项目隔离）
-    private static final Key<MyBatisCacheManagerDefault> INSTANCE_KEY = Key.create("MyBatisCacheManager.Instance");
     // 日志实例
     private static final Logger LOG = Logger.getInstance(MyBatisCacheManagerDefault.class);
+    // 全量刷新时每批写入缓存的最大条数，避免整个项目的解析结果同时驻留内存
+    private static final int FLUSH_BATCH_SIZE = 2000;
     /**
-     * 通知标记
+     * 通知标记（每个项目单独记录，全量刷新期间不提示缓存失效）
      */
-    public static boolean notifyFlag = true;
-    // 定时扫描线程池
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean notifyFlag = new AtomicBoolean(true);
+    // 定时扫描任务（运行在平台共享的调度线程上，项目释放时取消）
+    private volatile ScheduledFuture<?> scanFuture;
     // 项目实例
     private final Project project;
     // 防止重复扫描的锁
     private final transient Object scanLock = new Object();
+    // 刷新的并发协调：按文件分段加锁，全量刷新独占并取代之前提交的增量刷新
+    private final MyBatisRefreshCoordinator refreshCoordinator = new MyBatisRefreshCoordinator();
     // 缓存版本号，用于增量更新
     private final AtomicLong cacheVersion = new AtomicLong(1);
     // 全局缓存核心配置
     private MyBatisCache myBatisCache;
     // 定时扫描间隔（5分钟，单位：毫秒）
     private long scanIntervalMs = 5 * 60 * 1000;
+    // 最近一次全量刷新的统计信息（展示在刷新完成通知中）
+    private volatile String refreshStats = "";
 
     /**
-     * 私有构造器（单例模式）
+     * 项目服务构造器，由平台创建，随项目释放
      */
-    MyBatisCacheManagerDefault(@NotNull Project project) {
+    public MyBatisCacheManagerDefault(@NotNull Project project) {
         this.project = project;
         this.myBatisCache = MyBatisCacheFactory.getRecommendedParser(project);
         this.initialize();
+        // 缓存子系统已在使用，下次打开项目时直接激活
+        MyBatisCacheActivation.getInstance(project).markActivated();
     }
 
     /**
-     * 获取单例实例（按项目隔离）
+     * 获取实例（项目服务，按项目隔离）
      */
     public static MyBatisCacheManagerDefault getInstance(@NotNull Project project) {
-        MyBatisCacheManagerDefault instance = project.getUserData(INSTANCE_KEY);
-        if (instance == null) {
-            instance = new MyBatisCacheManagerDefault(project);
-            project.putUserData(INSTANCE_KEY, instance);
-        }
-        return instance;
+        return project.getService(MyBatisCacheManagerDefault.class);
     }
 
     /**
@@ -129,12 +143,14 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
      * 注册VFS文件变化监听器，文件修改/删除时主动失效缓存
      */
     private void registerFileListener() {
-        MessageBusConnection connection = project.getMessageBus().connect();
+        // 连接随服务释放断开，监听器不会在项目关闭后继续持有项目
+        MessageBusConnection connection = project.getMessageBus().connect(this);
         // 获取项目文件索引
         ProjectFileIndex fileIndex = ProjectRootManager.getInstance(project).getFileIndex();
         connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
             @Override
             public void after(@NotNull List<? extends VFileEvent> events) {
+                List<String> changedPaths = new ArrayList<>();
                 for (VFileEvent event : events) {
                     VirtualFile file = event.getFile();
                     if (file == null) continue;
@@ -162,16 +178,38 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
                         return;
                     }
 
-                    // 4. 处理有效文件的变更
+                    // 4. 收集有效文件的变更
                     if (event instanceof VFileContentChangeEvent) {
                         LOG.debug(CACHE_LOG_PREFIX + "文件变化触发缓存失效: " + file.getPath());
-                        ReadAction.run(() -> refreshInvalidatedCaches(file.getPath()));
+                        changedPaths.add(file.getPath());
                     }
                     if (event instanceof VFileDeleteEvent) {
                         LOG.debug(CACHE_LOG_PREFIX + "文件删除触发缓存失效: " + file.getPath());
-                        ReadAction.run(() -> refreshInvalidatedCaches(file.getPath()));
+                        changedPaths.add(file.getPath());
                     }
                 }
+                if (changedPaths.isEmpty()) {
+                    return;
+                }
+                // 5. 在事件中登记请求，刷新放到后台执行，不同文件的刷新可以并行；切换分支等批量变化时编辑器中打开的文件先提交
+                Set<String> openPaths = new HashSet<>();
+                for (VirtualFile openFile : FileEditorManager.getInstance(project).getOpenFiles()) {
+                    openPaths.add(openFile.getPath());
+                }
+                changedPaths.sort(Comparator.comparing((String path) -> !openPaths.contains(path)));
+                changedPaths.forEach(path -> submitRefresh(path));
+            }
+        });
+    }
+
+    /**
+     * 登记文件的刷新请求并在后台执行
+     */
+    private void submitRefresh(@NotNull String filePath) {
+        MyBatisRefreshCoordinator.Ticket ticket = refreshCoordinator.request(filePath);
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            if (!project.isDisposed()) {
+                refreshInvalidatedCaches(ticket);
             }
         });
     }
@@ -181,9 +219,8 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
      */
     private void startPeriodicScan() {
         // 定时全面扫描
-        scheduler.scheduleAtFixedRate(() -> {
+        scanFuture = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
             if (project.isDisposed()) {
-                scheduler.shutdown();
                 return;
             }
             // 同步执行扫描，避免并发
@@ -194,6 +231,23 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
         LOG.debug(CACHE_LOG_PREFIX + "定时扫描任务启动，间隔: " + scanIntervalMs + "ms");
     }
 
+    private void cancelPeriodicScan() {
+        ScheduledFuture<?> future = scanFuture;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * 项目关闭时释放：取消定时扫描，消息总线连接随之断开
+     */
+    @Override
+    public void dispose() {
+        cancelPeriodicScan();
+        scanFuture = null;
+        LOG.debug(CACHE_LOG_PREFIX + "缓存管理器已释放，项目: " + project.getName());
+    }
+
     /**
      * 扫描文件变化，通过摘要对比判断是否需要刷新缓存
      */
@@ -201,11 +255,24 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
         LOG.debug(CACHE_LOG_PREFIX + "开始定时扫描文件变化");
         int changedCount = 0;
         int newCount = 0;
+        // 扫描开始时的全量刷新轮次，期间有全量刷新时让出（全量刷新会重新解析所有文件）
+        long startEpoch = refreshCoordinator.currentEpoch();
         //得到所有文件
         List<String> filePathList = ProjectFileUtils.getFilePathListByTypeInSourceRoots(project, "xml", "java");
+        // 编辑器中打开的文件及其关联文件先检查
+        MyBatisRefreshPriority priority = MyBatisRefreshPriority.collect(project, myBatisCache);
         // 遍历所有缓存的文件摘要
-        if (myBatisCache.getAllFileDigest() != null) {
-            for (Map.Entry<String, String> entry : myBatisCache.getAllFileDigest().entrySet()) {
+        Map<String, String> allFileDigest = myBatisCache.getAllFileDigest();
+        // 上一个文件的开始时间，按后台 CPU 占比让出时间（摘要计算的读取速率由资源预算限制）
+        long iterationStart = System.nanoTime();
+        if (allFileDigest != null) {
+            for (Map.Entry<String, String> entry : priority.prioritize(allFileDigest.entrySet(), Map.Entry::getKey)) {
+                ResourceBudget.throttleCpu(System.nanoTime() - iterationStart);
+                iterationStart = System.nanoTime();
+                if (refreshCoordinator.isPreempted(startEpoch)) {
+                    LOG.info(CACHE_LOG_PREFIX + "全量刷新开始，定时扫描提前结束");
+                    return;
+                }
                 String filePath = entry.getKey();
                 String oldDigest = entry.getValue();
                 // 从所有文件中删除
@@ -214,8 +281,10 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
                 VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
                 if (file == null || !file.exists()) {
                     // 文件已删除，清除缓存
-                    clearFileCache(filePath);
-                    changedCount++;
+                    MyBatisRefreshCoordinator.Ticket ticket = refreshCoordinator.observe(filePath);
+                    if (refreshCoordinator.runIncremental(ticket, List.of(filePath), () -> clearFileCache(filePath))) {
+                        changedCount++;
+                    }
                     continue;
                 }
 
@@ -224,23 +293,38 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
                 if (!newDigest.equals(oldDigest)) {
                     // 摘要不一致，文件已修改
                     LOG.info(CACHE_LOG_PREFIX + "文件内容变更: " + filePath + "（旧摘要: " + oldDigest + ", 新摘要: " + newDigest + "）");
-                    clearFileCache(filePath);
-                    myBatisCache.saveFileDigest(file, newDigest); // 更新摘要
-                    reparseAndCacheFile(file); // 重新解析
-                    changedCount++;
+                    MyBatisRefreshCoordinator.Ticket ticket = refreshCoordinator.observe(filePath);
+                    if (refreshCoordinator.runIncremental(ticket, List.of(filePath), () -> {
+                        clearFileCache(filePath);
+                        myBatisCache.saveFileDigest(file, newDigest); // 更新摘要
+                        reparseAndCacheFile(file); // 重新解析
+                    })) {
+                        changedCount++;
+                    }
                 }
             }
         }
         // 剩下的就是新增文件
-        for (String filePath : filePathList) {
-            LOG.debug(CACHE_LOG_PREFIX + "发现 " + filePathList.size() + " 个新增文件");
-            clearFileCache(filePath);
-            String newDigest = ProjectFileUtils.calculateFileDigest(filePath);
+        LOG.debug(CACHE_LOG_PREFIX + "发现 " + filePathList.size() + " 个新增文件");
+        for (String filePath : priority.prioritize(filePathList, Function.identity())) {
+            ResourceBudget.throttleCpu(System.nanoTime() - iterationStart);
+            iterationStart = System.nanoTime();
+            if (refreshCoordinator.isPreempted(startEpoch)) {
+                LOG.info(CACHE_LOG_PREFIX + "全量刷新开始，定时扫描提前结束");
+                return;
+            }
             VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
-            if (file != null) {
-                newCount++;
+            if (file == null) {
+                continue;
+            }
+            MyBatisRefreshCoordinator.Ticket ticket = refreshCoordinator.observe(filePath);
+            if (refreshCoordinator.runIncremental(ticket, List.of(filePath), () -> {
+                clearFileCache(filePath);
+                String newDigest = ProjectFileUtils.calculateFileDigest(filePath);
                 myBatisCache.saveFileDigest(file, newDigest); // 更新摘要
                 reparseAndCacheFile(file); // 重新解析
+            })) {
+                newCount++;
             }
         }
 
@@ -251,45 +335,67 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
      * 刷新单个文件的缓存
      */
     private void reparseAndCacheFile(@NotNull VirtualFile file) {
-        ReadAction.run(() -> {
-            PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
-            Project project = null;
-            if (psiFile != null) {
-                project = psiFile.getProject();
-            }
-            if (project != null && DumbService.getInstance(project).isDumb()) {
-                DumbService.getInstance(project).runWhenSmart(() -> ApplicationManager.getApplication().executeOnPooledThread(() -> doReparseAndCache(file)));
-            }
-        });
-
+        // 索引未就绪时等到就绪后再在后台执行
+        if (DumbService.getInstance(project).isDumb()) {
+            DumbService.getInstance(project).runWhenSmart(() -> ApplicationManager.getApplication().executeOnPooledThread(() -> doReparseAndCache(file)));
+            return;
+        }
         // 索引就绪时直接执行
         doReparseAndCache(file);
     }
 
     private void doReparseAndCache(VirtualFile file) {
         try {
-            ReadAction.run(() -> {
-                PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
-                if (psiFile == null) return;
+            // 解析在可被写操作打断的读操作中完成，写入缓存放在读操作之外
+            ReparseResult result = readInSmartMode(() -> {
+                PsiFile psiFile = file.isValid() ? PsiManager.getInstance(project).findFile(file) : null;
+                ReparseResult reparseResult = null;
                 if (psiFile instanceof XmlFile xmlFile) {
                     // 重新解析XML文件
                     MyBatisXmlParser parser = MyBatisXmlParserFactory.getRecommendedParser(project);
-                    MyBatisXmlParser.MyBatisParseResult parse = parser.parse(xmlFile);
-                    List<XmlElementInfo> xmlElementInfos = syncToCacheManager(parse);
-                    myBatisCache.addXmlElementMapping(xmlElementInfos);
+                    reparseResult = new ReparseResult(syncToCacheManager(parser.parse(xmlFile)), null);
                 } else if (psiFile instanceof PsiJavaFile psiJavaFile) {
                     // 重新解析Java文件
                     JavaParser parser = JavaParserFactory.getRecommendedParser(project);
-                    JavaParser.JavaParseResult parse = parser.parseEverything(psiJavaFile);
-                    List<JavaElementInfo> javaElementInfos = syncToCacheManager(parse);
-                    myBatisCache.addJavaElementMapping(javaElementInfos);
+                    reparseResult = new ReparseResult(null, syncToCacheManager(parser.parseEverything(psiJavaFile)));
+                }
+                if (reparseResult != null) {
+                    // 偏移量已按文档当前内容计算，在同一个读操作中清空修改记录（重新执行时会再次计算并清空）
+                    DocumentOffsetTracker.getInstance().reset(file);
                 }
+                return reparseResult;
             });
+            if (result == null) {
+                return;
+            }
+            if (result.xmlElementInfos() != null) {
+                myBatisCache.addXmlElementMapping(result.xmlElementInfos());
+            } else {
+                myBatisCache.addJavaElementMapping(result.javaElementInfos());
+            }
         } catch (IndexNotReadyException e) {
             // 兜底：即使漏检，也捕获异常避免崩溃
             LOG.warn("索引未就绪，跳过文件解析: " + file.getName(), e);
         }
     }
+
+    /**
+     * 在可被写操作打断的读操作中执行一个工作单元（需要索引）
+     * <p>
+     * 有写操作等待时单元被取消，写操作完成后从头重新执行，因此刷新不会长时间阻塞输入和写操作；
+     * 单元内不能有副作用，结果通过返回值交出；返回值不能引用 PSI（读操作结束后 PSI 可能被写操作改变或失效），
+     * 需要跨单元使用的 PSI 用 {@link SmartPsiElementPointer} 传递，在下一个单元中重新取出并检查是否有效
+     */
+    private <T> T readInSmartMode(@NotNull Callable<T> unit) {
+        return ReadAction.nonBlocking(unit).inSmartMode(project).expireWith(this).executeSynchronously();
+    }
+
+    /**
+     * 单个文件重新解析的结果（XML 与 Java 二选一）
+     */
+    private record ReparseResult(List<XmlElementInfo> xmlElementInfos, List<JavaElementInfo> javaElementInfos) {
+    }
+
     // ========================= 缓存操作核心方法 =========================
 
     @Override
@@ -381,36 +487,59 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
 
     @Override
     public void refreshInvalidatedCaches(String filePath) {
+        refreshInvalidatedCaches(refreshCoordinator.request(filePath));
+    }
+
+    /**
+     * 刷新请求涉及的缓存，持有文件本身及所有关联文件的锁执行
+     */
+    private void refreshInvalidatedCaches(@NotNull MyBatisRefreshCoordinator.Ticket ticket) {
+        String filePath = ticket.filePath();
         try {
             LOG.debug(CACHE_LOG_PREFIX + "开始刷新无效缓存");
 
-            // 从缓存获取当前文件涉及的所有sqlId
-            Set<String> allSqlIdList = myBatisCache.getAllSqlIdByFilePath(filePath);
-
-            // 拿到sql涉及的所有文件
-            Set<String> fileList = myBatisCache.getAllFilePathsBySqlIdList(allSqlIdList);
-
-            // 删除涉及的所有旧缓存
-            myBatisCache.removeBySqlIdList(allSqlIdList);
-
-            // 刷新一遍涉及的所有文件
-            for (String file : fileList) {
-                // 重新解析文件并更新缓存
-                VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(file);
-                if (virtualFile != null) {
-                    reparseAndCacheFile(virtualFile);
+            // 刷新会写入的文件：触发的文件本身和 sql 涉及的所有文件；加锁后重新读取一次，期间关联关系变化时扩大加锁范围
+            boolean refreshed = refreshCoordinator.runIncremental(ticket, () -> planInvalidation(filePath), InvalidationPlan::filePaths, plan -> {
+                // 删除涉及的所有旧缓存
+                myBatisCache.removeBySqlIdList(plan.sqlIds());
+
+                // 刷新一遍涉及的所有文件
+                for (String file : plan.filePaths()) {
+                    // 重新解析文件并更新缓存
+                    VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(file);
+                    if (virtualFile != null) {
+                        reparseAndCacheFile(virtualFile);
+                    }
                 }
-            }
+            });
 
-            LOG.debug(CACHE_LOG_PREFIX + "刷新无效缓存完成");
+            LOG.debug(CACHE_LOG_PREFIX + (refreshed ? "刷新无效缓存完成" : "刷新请求已被取代，跳过: " + filePath));
         } catch (IndexNotReadyException e) {
             // 记录日志，跳过本次刷新
             LOG.warn("索引未就绪，跳过缓存刷新", e);
-            // 延迟到索引就绪后重试（可选）
-            DumbService.getInstance(project).runWhenSmart(() -> refreshInvalidatedCaches(filePath));
+            // 延迟到索引就绪后重试（沿用原请求的代数，期间有更新的请求时不再重复刷新）
+            DumbService.getInstance(project).runWhenSmart(() -> AppExecutorUtil.getAppExecutorService().execute(() -> refreshInvalidatedCaches(ticket)));
         }
     }
 
+    /**
+     * 读取文件当前涉及的 sqlId 及这些 sqlId 涉及的所有文件
+     */
+    @NotNull
+    private InvalidationPlan planInvalidation(@NotNull String filePath) {
+        // 从缓存获取当前文件涉及的所有sqlId
+        Set<String> allSqlIdList = myBatisCache.getAllSqlIdByFilePath(filePath);
+        // 拿到sql涉及的所有文件
+        Set<String> fileList = myBatisCache.getAllFilePathsBySqlIdList(allSqlIdList);
+        return new InvalidationPlan(allSqlIdList, fileList);
+    }
+
+    /**
+     * 一次无效缓存刷新涉及的 sqlId 和文件
+     */
+    private record InvalidationPlan(Set<String> sqlIds, Set<String> filePaths) {
+    }
+
     // ========================= 配置与统计 =========================
 
     @Override
@@ -429,8 +558,8 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
     @Override
     public void setScanInterval(long intervalMs) {
         this.scanIntervalMs = intervalMs;
-        // 重启定时任务
-        scheduler.shutdownNow();
+        // 重启定时任务（只取消本项目的任务，共享的调度线程继续运行）
+        cancelPeriodicScan();
         startPeriodicScan();
         LOG.debug(CACHE_LOG_PREFIX + "更新扫描间隔为: " + intervalMs + "ms");
     }
@@ -440,41 +569,58 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
      */
     @Override
     public void performFullCacheRefresh(MyBatisCacheRefreshRange cacheRefreshRange, int numberOfRefreshes) {
-        notifyFlag = false;
+        notifyFlag.set(false);
         ProgressManager.getInstance().run(new Task.Backgroundable(project, "刷新插件 km-quick-mybatis 缓存") {
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
                 long start = System.currentTimeMillis();
-
-                indicator.setText("正在清除" + cacheRefreshRange + "旧缓存...");
-                clearCache(cacheRefreshRange);
-
-                // 设置进度条为不确定性
-                indicator.setIndeterminate(false);
-                // 初始化进度
-                indicator.setFraction(0.0);
-
-                // 进度
-                double[] progress = {0.0};
-
-                switch (cacheRefreshRange) {
-                    case ALL -> {
-                        processAllMyBatisFiles(indicator, 0.3, progress);
-                        processAllJavaFiles(indicator, 0.3, progress);
-                        processAllJavaMyBatisMethodCall(indicator, 0.3, progress);
-                    }
-                    case XML -> processAllMyBatisFiles(indicator, 1, progress);
-                    case JAVA -> processAllJavaFiles(indicator, 1, progress);
-                    case JAVA_METHOD_CALL -> processAllJavaMyBatisMethodCall(indicator, 1, progress);
+                refreshStats = "";
+
+                // 测量刷新期间界面的最长卡顿
+                try (MyBatisEdtLatencyProbe edtProbe = MyBatisEdtLatencyProbe.start()) {
+                    // 独占执行：等待进行中的增量刷新让出，刷新全部缓存时之前提交的增量刷新全部作废
+                    refreshCoordinator.runExclusive(cacheRefreshRange == MyBatisCacheRefreshRange.ALL, () -> {
+                        // 清除前读取上次记录的解析耗时和打开文件的关联关系，用于安排本次的解析顺序
+                        Map<String, Long> parseCosts = myBatisCache.getAllParseCosts();
+                        MyBatisRefreshPriority priority = MyBatisRefreshPriority.collect(project, myBatisCache);
+                        indicator.setText("正在清除" + cacheRefreshRange + "旧缓存...");
+                        clearCache(cacheRefreshRange);
+
+                        // 设置进度条为不确定性
+                        indicator.setIndeterminate(false);
+                        // 初始化进度
+                        indicator.setFraction(0.0);
+
+                        // 进度
+                        double[] progress = {0.0};
+
+                        switch (cacheRefreshRange) {
+                            case ALL -> {
+                                processAllMyBatisFiles(indicator, 0.3, progress, parseCosts, priority);
+                                processAllJavaFiles(indicator, 0.3, progress, parseCosts, priority);
+                                processAllJavaMyBatisMethodCall(indicator, 0.3, progress);
+                            }
+                            case XML -> processAllMyBatisFiles(indicator, 1, progress, parseCosts, priority);
+                            case JAVA -> processAllJavaFiles(indicator, 1, progress, parseCosts, priority);
+                            case JAVA_METHOD_CALL -> processAllJavaMyBatisMethodCall(indicator, 1, progress);
+                        }
+
+                        indicator.setText("正在更新缓存版本...");
+                        incrementCacheVersion();
+                    });
+                    LOG.info(CACHE_LOG_PREFIX + cacheRefreshRange + "缓存刷新期间 EDT 最长响应延迟: " + edtProbe.getMaxLatencyMs() + "ms（采样 " + edtProbe.getSampleCount() + " 次）");
+                    refreshStats += "<br/>刷新期间界面最长卡顿 " + edtProbe.getMaxLatencyMs() + "ms";
                 }
 
-                indicator.setText("正在更新缓存版本...");
-                incrementCacheVersion();
-
                 indicator.setText("缓存刷新完成");
 
                 // 关闭通知标记
-                notifyFlag = true;
+                notifyFlag.set(true);
+
+                // 批量写入后重新统计一次缓存计数，并检查缓存健康状态
+                MyBatisCacheHealth health = MyBatisCacheHealth.getInstance(project);
+                health.invalidateCounts();
+                health.scheduleEvaluation();
 
                 long end = System.currentTimeMillis();
                 long ms = (end - start);
@@ -482,8 +628,8 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
                 // 通知用户缓存刷好了
                 String notificationKey = this.getClass().getName() + "-performFullCacheRefresh";
                 String title = "km-quick-mybatis";
-                String context0 = "ヾ(ｏ･ω･)ﾉ 太好了，" + cacheRefreshRange + "缓存刷新完毕，一共花了" + TimeStrFormatter.format(ms) + " <br/>你也可以按 ctrl + alt + r 再次刷新";
-                String context1 = "⊙(・◇・)？" + cacheRefreshRange + "缓存又刷新好了，这次花了" + TimeStrFormatter.format(ms) + "<br/>你也可以按 ctrl + alt + r 再次刷新";
+                String context0 = "ヾ(ｏ･ω･)ﾉ 太好了，" + cacheRefreshRange + "缓存刷新完毕，一共花了" + TimeStrFormatter.format(ms) + refreshStats + " <br/>你也可以按 ctrl + alt + r 再次刷新";
+                String context1 = "⊙(・◇・)？" + cacheRefreshRange + "缓存又刷新好了，这次花了" + TimeStrFormatter.format(ms) + refreshStats + "<br/>你也可以按 ctrl + alt + r 再次刷新";
                 String content = numberOfRefreshes > 0 ? context1 : context0;
                 String leftBtnText = "干得好!";
                 NotificationUtil.NotificationActionCallback rightCallBack = (pro, not) -> LOG.trace("右侧什么都不做");
@@ -492,6 +638,12 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
                 NotificationUtil.showCustomNotification(project, notificationKey, title, content, leftBtnText, rightCallBack, rightBtnText, leftCallBack, NotificationUtil.NoMoreSuggestionsFeature.NOT_ENABLED);
 
             }
+
+            @Override
+            public void onFinished() {
+                // 刷新被取消或异常结束时同样恢复通知标记
+                notifyFlag.set(true);
+            }
         });
     }
 
@@ -501,45 +653,55 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
      * @param indicator  @See {@link com.intellij.openapi.progress.ProgressIndicator}
      * @param proportion 占用的总进度
      * @param progress   进度上限文
+     * @param parseCosts 上次刷新记录的解析耗时（文件路径 -> 微秒）
+     * @param priority   优先刷新的文件（编辑器中打开的文件及其关联文件）
      */
-    private void processAllMyBatisFiles(ProgressIndicator indicator, double proportion, double[] progress) {
+    private void processAllMyBatisFiles(ProgressIndicator indicator, double proportion, double[] progress, Map<String, Long> parseCosts, MyBatisRefreshPriority priority) {
         indicator.setText("正在重新解析所有MyBatis文件...");
-        // 解析所有XML文件
-        XmlService xmlService = XmlService.getInstance(project);
-        // 获取所有 MyBatisXml 文件
-        List<XmlFile> myBatisXmlFiles = xmlService.getMyBatisXmlFiles();
-        // 获取 MyBatisXml 解析器
-        MyBatisXmlParser parser = MyBatisXmlParserFactory.getRecommendedParser(project);
+        // 获取所有 Xml 文件（只取 VirtualFile，不创建 PSI）
+        List<VirtualFile> xmlFiles = ProjectFileUtils.getVirtualFilesByTypeInSourceRoots(project, "xml");
+        // 获取流式 MyBatisXml 解析器（全量刷新不需要构建 PSI 树）
+        MyBatisXmlStreamParser parser = MyBatisXmlParserFactory.createStreamParser(project);
         // 计算每个文件的百分占比
-        int size = myBatisXmlFiles.size();
+        int size = xmlFiles.size();
         double step = proportion / (size + 1);
-        // 遍历所有 MyBatisXml
-        List<XmlElementInfo> xmlElementInfos = new ArrayList<>();
-        for (int i = 0; i < size; i++) {
-            XmlFile xmlFile = myBatisXmlFiles.get(i);
-            // 获取当前文件的绝对路径
-            String filePath = xmlFile.getVirtualFile().getPath();
-            // 获取项目的绝对路径
-            // 从文件绝对路径中删除项目绝对路径展示给用户
-            String showText = xmlFile.getVirtualFile().getName();
-            // 设置进度条上方显示的进度文本
-            indicator.setText(showText + ":解析XML文件:(" + i + "/" + size + ")");
-            // 设置进度条下显示的进度详细信息文本
-            indicator.setText2("(" + size + "/" + i + "):" + filePath);
-            // 调用Xml解析器拿到结果
-            MyBatisXmlParser.MyBatisParseResult parse = parser.parse(xmlFile);
-            //更新缓存
-            LOG.debug("MyBatis XML文件解析完成: " + filePath);
-            List<XmlElementInfo> tmp = syncToCacheManager(parse);
-            xmlElementInfos.addAll(tmp);
-            LOG.debug("MyBatis XML同步到缓存完成: " + filePath);
-            // 更新进度
-            progress[0] += step;
-            // 设置进度
-            indicator.setFraction(progress[0]);
+        double base = progress[0];
+        // 打开的文件优先，其余按上次的解析耗时从大到小并行解析，解析结果交给流水线按批次计算摘要并写入缓存，解析与写入同时进行
+        MyBatisParseScheduler scheduler = new MyBatisParseScheduler("XML", indicator, parseCosts, priority);
+        int total;
+        try (MyBatisRefreshPipeline<MyBatisXmlStreamParser.StreamParseResult, XmlElementInfo> pipeline = new MyBatisRefreshPipeline<>("XML", indicator, MyBatisCacheHealth.getInstance(project), FLUSH_BATCH_SIZE, MyBatisXmlStreamParser.StreamParseResult::getCacheElements, XmlElementInfo::getFilePath, myBatisCache::addXmlElementMapping)) {
+            scheduler.execute(xmlFiles, xmlFile -> {
+                // 获取当前文件的绝对路径
+                String filePath = xmlFile.getPath();
+                // 设置进度条下显示的进度详细信息文本
+                indicator.setText2(filePath);
+                long parseStart = System.nanoTime();
+                // 偏移量按读取到的文本计算，在读取文本的同一个读操作中清空修改记录，之后的编辑继续记录
+                CharSequence text = ReadAction.compute(() -> {
+                    CharSequence loaded = MyBatisXmlStreamParser.loadText(xmlFile);
+                    DocumentOffsetTracker.getInstance().reset(xmlFile);
+                    return loaded;
+                });
+                // 调用Xml解析器拿到结果
+                MyBatisXmlStreamParser.StreamParseResult parse = text != null ? parser.parse(filePath, text) : null;
+                LOG.debug("MyBatis XML文件解析完成: " + filePath);
+                if (parse != null) {
+                    // 交给流水线构建缓存行、计算摘要并写入
+                    pipeline.submit(parse, System.nanoTime() - parseStart);
+                }
+            }, () -> pipeline.flush(this::restartOpenEditors), done -> {
+                // 设置进度条上方显示的进度文本
+                indicator.setText("解析XML文件:(" + done + "/" + size + ")");
+                // 设置进度
+                indicator.setFraction(base + done * step);
+            });
+            progress[0] = base + size * step;
+            indicator.setText("正在保存 Xml缓存...");
+            total = pipeline.finish();
         }
-        indicator.setText("正在保存" + xmlElementInfos.size() + "个 Xml缓存...");
-        myBatisCache.addXmlElementMapping(xmlElementInfos);
+        // 流水线已写入文件摘要，记录本次的解析耗时
+        myBatisCache.saveParseCosts(scheduler.getMeasuredCosts());
+        LOG.debug("Xml缓存保存完成，共" + total + "条");
         indicator.setFraction(Math.min(progress[0], 1.0));
 
     }
@@ -547,43 +709,71 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
     /**
      * 处理所有相关Java文件
      */
-    private void processAllJavaFiles(ProgressIndicator indicator, double proportion, double[] progress) {
+    private void processAllJavaFiles(ProgressIndicator indicator, double proportion, double[] progress, Map<String, Long> parseCosts, MyBatisRefreshPriority priority) {
         indicator.setText("正在处理Java文件...");
-        // 解析所有JAVA文件
-        JavaService javaService = JavaService.getInstance(project);
-        // 获取所有 Java 文件
-        List<PsiJavaFile> javaFiles = javaService.getAllJavaFiles();
+        // 获取所有 Java 文件（只取 VirtualFile，PSI 在处理时逐个获取，处理完即可释放）
+        List<VirtualFile> javaFiles = ProjectFileUtils.getVirtualFilesByTypeInSourceRoots(project, "java");
         // 获取 Java 解析器
         JavaParser parser = JavaParserFactory.getRecommendedParser(project);
+        PsiManager psiManager = PsiManager.getInstance(project);
+        // 基于单词索引的预筛选，排除与 MyBatis 无关的文件
+        indicator.setText("正在预筛选Java文件...");
+        JavaFilePrefilter prefilter = JavaFilePrefilter.create(project, myBatisCache.getAllXmlSqlIds());
+        AtomicInteger skippedCount = new AtomicInteger();
         // 计算每个文件的百分占比
         int size = javaFiles.size();
         double step = proportion / (size + 1);
-        // 获取所有映射的Java文件路径
-        List<JavaElementInfo> javaElementInfosAll = new ArrayList<>();
-        for (int i = 0; i < size; i++) {
-            PsiJavaFile psiJavaFile = javaFiles.get(i);
-            // 获取当前文件的绝对路径
-            String filePath = psiJavaFile.getVirtualFile().getPath();
-            // 从文件绝对路径中删除项目绝对路径展示给用户
-            String showText = psiJavaFile.getVirtualFile().getName();
-            // 设置进度条上方显示的进度文本
-            indicator.setText(showText + ":解析Java文件:(" + i + "/" + size + ")");
-            // 设置进度条下显示的进度详细信息文本
-            indicator.setText2("(" + size + "/" + i + "):" + filePath);
-            // 调用Xml解析器拿到结果
-            JavaParser.JavaParseResult parse = parser.parse(psiJavaFile);
-            //更新缓存
-            LOG.debug("Java 文件解析完成: " + filePath);
-            List<JavaElementInfo> tmp = syncToCacheManager(parse);
-            javaElementInfosAll.addAll(tmp);
-            LOG.debug("Java 同步到缓存完成: " + filePath);
-            // 更新进度
-            progress[0] += step;
-            // 设置进度
-            indicator.setFraction(progress[0]);
+        double base = progress[0];
+        // 打开的文件优先，其余按上次的解析耗时从大到小并行解析，缓存行交给流水线计算摘要并按批次写入，PSI 解析与写入同时进行
+        MyBatisParseScheduler scheduler = new MyBatisParseScheduler("Java", indicator, parseCosts, priority);
+        int total;
+        try (MyBatisRefreshPipeline<List<JavaElementInfo>, JavaElementInfo> pipeline = new MyBatisRefreshPipeline<>("Java", indicator, MyBatisCacheHealth.getInstance(project), FLUSH_BATCH_SIZE, Function.identity(), JavaElementInfo::getFilePath, myBatisCache::addJavaElementMapping)) {
+            scheduler.execute(javaFiles, javaFile -> {
+                // 获取当前文件的绝对路径
+                String filePath = javaFile.getPath();
+                // 设置进度条下显示的进度详细信息文本
+                indicator.setText2(filePath);
+                if (!prefilter.isCandidate(javaFile)) {
+                    skippedCount.incrementAndGet();
+                    // 不解析，但记录摘要，之后的定时扫描不会把它当作新增文件重新解析
+                    pipeline.skip(filePath);
+                    return;
+                }
+                long parseStart = System.nanoTime();
+                // 每个文件单独一个可被写操作打断的读操作，解析和构建缓存行在同一个读操作中完成，交出的缓存行不再引用 PSI
+                List<JavaElementInfo> rows = readInSmartMode(() -> {
+                    PsiFile psiFile = javaFile.isValid() ? psiManager.findFile(javaFile) : null;
+                    if (!(psiFile instanceof PsiJavaFile psiJavaFile)) {
+                        return null;
+                    }
+                    List<JavaElementInfo> javaElementInfos = syncToCacheManager(parser.parse(psiJavaFile));
+                    // 偏移量已按文档当前内容计算，在同一个读操作中清空修改记录（重新执行时会再次计算并清空）
+                    DocumentOffsetTracker.getInstance().reset(javaFile);
+                    return javaElementInfos;
+                });
+                if (rows != null) {
+                    LOG.debug("Java 文件解析完成: " + filePath);
+                    // 交给流水线计算摘要并写入
+                    pipeline.submit(rows, System.nanoTime() - parseStart);
+                }
+            }, () -> pipeline.flush(this::restartOpenEditors), done -> {
+                // 设置进度条上方显示的进度文本
+                indicator.setText("解析Java文件:(" + done + "/" + size + ")");
+                // 设置进度
+                indicator.setFraction(base + done * step);
+            });
+            progress[0] = base + size * step;
+            indicator.setText("正在保存 Java缓存...");
+            total = pipeline.finish();
+        }
+        // 流水线已写入文件摘要，记录本次的解析耗时
+        myBatisCache.saveParseCosts(scheduler.getMeasuredCosts());
+        int skipped = skippedCount.get();
+        LOG.debug("Java缓存保存完成，共" + total + "条");
+        if (prefilter.isEnabled() && size > 0) {
+            LOG.debug("Java文件预筛选跳过: " + skipped + "/" + size);
+            refreshStats = "<br/>Java文件预筛选跳过了 %d/%d 个文件(%.1f%%)".formatted(skipped, size, skipped * 100.0 / size);
         }
-        indicator.setText("正在保存" + javaElementInfosAll.size() + "个 Java缓存...");
-        myBatisCache.addJavaElementMapping(javaElementInfosAll);
         indicator.setFraction(Math.min(progress[0], 1.0));
     }
 
@@ -598,69 +788,96 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
      */
     public void processAllJavaMyBatisMethodCall(@NotNull ProgressIndicator indicator, double proportion, double[] progress) {
         indicator.setText("正在扫描MyBatis方法调用...");
-        List<JavaElementInfo> javaElementInfos = ReadAction.compute(() -> doActualSearch(indicator, proportion, progress));
-        myBatisCache.addJavaElementMapping(javaElementInfos);
+        // 搜索到的调用按批次交给流水线计算摘要并写入，搜索与写入同时进行
+        try (MyBatisRefreshPipeline<List<JavaElementInfo>, JavaElementInfo> pipeline = new MyBatisRefreshPipeline<>("方法调用", indicator, MyBatisCacheHealth.getInstance(project), FLUSH_BATCH_SIZE, Function.identity(), JavaElementInfo::getFilePath, myBatisCache::addJavaElementMapping)) {
+            doActualSearch(indicator, proportion, progress, pipeline);
+            int total = pipeline.finish();
+            LOG.debug("方法调用缓存保存完成，共" + total + "条");
+        }
     }
 
 
-    private List<JavaElementInfo> doActualSearch(ProgressIndicator indicator, double proportion, double[] progress) {
+    /**
+     * 搜索所有目标方法的调用：每个目标方法的搜索是一个可被写操作打断的读操作，不再把整个搜索放在一个读操作中
+     */
+    private void doActualSearch(ProgressIndicator indicator, double proportion, double[] progress, MyBatisRefreshPipeline<List<JavaElementInfo>, JavaElementInfo> pipeline) {
         indicator.setText("正在搜索MyBatis方法调用...");
         indicator.setText2("准备搜索...");
-        return ReadAction.compute(() -> {
-            TargetMethodsHolder targetHolder = new TargetMethodsHolder(project);
-            Set<PsiMethod> targetMethods = targetHolder.reloadTargetMethods();
-
-            if (targetMethods.isEmpty()) {
-                indicator.setText("未找到任何目标方法，跳过搜索。");
-                progress[0] += proportion;
-                indicator.setFraction(Math.min(progress[0], 1.0));
-                return Collections.emptyList();
-            }
+        // 目标方法要在之后的多个单元中使用，只交出智能指针，每个单元重新取出
+        List<SmartPsiElementPointer<PsiMethod>> targetMethods = readInSmartMode(() -> {
+            SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+            return new TargetMethodsHolder(project).reloadTargetMethods().stream().map(pointerManager::createSmartPsiElementPointer).toList();
+        });
+
+        if (targetMethods.isEmpty()) {
+            indicator.setText("未找到任何目标方法，跳过搜索。");
+            progress[0] += proportion;
+            indicator.setFraction(Math.min(progress[0], 1.0));
+            return;
+        }
 
-            // 计算每个方法的进度步长
-            final int totalMethods = targetMethods.size();
-            final double step = proportion / totalMethods;
+        // 计算每个方法的进度步长
+        final int totalMethods = targetMethods.size();
+        final double step = proportion / totalMethods;
 
-            // 预初始化集合容量，减少扩容开销
-            final List<JavaElementInfo> javaElementInfoList = new ArrayList<>(totalMethods * 8);
-            // 缩小搜索范围，仅包含项目内的Java文件，排除库文件
-            final GlobalSearchScope searchScope = GlobalSearchScope.projectScope(project);
-            GlobalSearchScope scopeRestrictedByFileTypes = GlobalSearchScope.getScopeRestrictedByFileTypes(searchScope, JavaFileType.INSTANCE);
+        // 当前批次的搜索结果，攒够一批后交给流水线
+        List<JavaElementInfo> javaElementInfoList = new ArrayList<>(FLUSH_BATCH_SIZE);
+        long batchStart = System.nanoTime();
+        // 缩小搜索范围，仅包含项目内的Java文件，排除库文件
+        final GlobalSearchScope searchScope = GlobalSearchScope.projectScope(project);
+        GlobalSearchScope scopeRestrictedByFileTypes = GlobalSearchScope.getScopeRestrictedByFileTypes(searchScope, JavaFileType.INSTANCE);
 
-            // 每处理10个方法更新一次进度文本，减少UI更新开销
-            final int progressUpdateInterval = Math.max(1, totalMethods / 50);
+        // 每处理10个方法更新一次进度文本，减少UI更新开销
+        final int progressUpdateInterval = Math.max(1, totalMethods / 50);
 
-            int processedCount = 0;
-            for (PsiMethod targetMethod : targetMethods) {
-                // 快速取消检测
-                if (indicator.isCanceled()) {
-                    break;
-                }
+        int processedCount = 0;
+        for (SmartPsiElementPointer<PsiMethod> targetMethodPointer : targetMethods) {
+            // 快速取消检测
+            if (indicator.isCanceled()) {
+                break;
+            }
 
-                processedCount++;
-                // 减少UI更新频率
-                if (processedCount % progressUpdateInterval == 0 || processedCount == 1 || processedCount == totalMethods) {
+            processedCount++;
+            // 减少UI更新频率
+            boolean updateText = processedCount % progressUpdateInterval == 0 || processedCount == 1 || processedCount == totalMethods;
+            int current = processedCount;
+            // 单个目标方法的搜索，被写操作打断时丢弃本次结果重新搜索
+            List<JavaElementInfo> found = readInSmartMode(() -> {
+                PsiMethod targetMethod = targetMethodPointer.getElement();
+                if (targetMethod == null || !targetMethod.isValid()) {
+                    return Collections.emptyList();
+                }
+                if (updateText) {
                     String className = getQualifiedClassName(targetMethod);
-                    String showText = String.format("(%d/%d) %s.%s", processedCount, totalMethods, className, targetMethod.getName());
+                    String showText = String.format("(%d/%d) %s.%s", current, totalMethods, className, targetMethod.getName());
                     indicator.setText2("正在搜索方法: " + showText);
                 }
                 // 缩小搜索范围 + 复用查询对象 //  // 不搜索继承的方法引用，减少结果量
                 Query<PsiReference> query = MethodReferencesSearch.search(targetMethod, scopeRestrictedByFileTypes, true);
-                // 使用内部类减少对象创建，批量收集结果
-                collectMethodCallReferences(indicator, query, javaElementInfoList);
-
-                // 进度更新时做边界检查，避免超过1.0
-                progress[0] = Math.min(progress[0] + step, 1.0);
-                // 每处理5个方法更新一次进度条，减少UI阻塞
-                if (processedCount % 5 == 0) {
-                    indicator.setFraction(progress[0]);
-                }
+                List<JavaElementInfo> result = new ArrayList<>();
+                collectMethodCallReferences(indicator, query, result);
+                return result;
+            });
+            javaElementInfoList.addAll(found);
+            if (javaElementInfoList.size() >= FLUSH_BATCH_SIZE) {
+                pipeline.submit(javaElementInfoList, System.nanoTime() - batchStart);
+                javaElementInfoList = new ArrayList<>(FLUSH_BATCH_SIZE);
+                batchStart = System.nanoTime();
             }
-            // 最终更新进度
-            indicator.setFraction(Math.min(progress[0], 1.0));
-            indicator.setText("MyBatis方法调用搜索完成。");
-            return javaElementInfoList;
-        });
+
+            // 进度更新时做边界检查，避免超过1.0
+            progress[0] = Math.min(progress[0] + step, 1.0);
+            // 每处理5个方法更新一次进度条，减少UI阻塞
+            if (processedCount % 5 == 0) {
+                indicator.setFraction(progress[0]);
+            }
+        }
+        // 最终更新进度
+        indicator.setFraction(Math.min(progress[0], 1.0));
+        if (!javaElementInfoList.isEmpty()) {
+            pipeline.submit(javaElementInfoList, System.nanoTime() - batchStart);
+        }
+        indicator.setText("MyBatis方法调用搜索完成。");
     }
 
     /**
@@ -738,6 +955,14 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
         });
     }
 
+    /**
+     * 优先文件已写入缓存，重新分析打开的编辑器，不等全量刷新结束就补上行标记
+     */
+    private void restartOpenEditors() {
+        LOG.debug(CACHE_LOG_PREFIX + "优先文件已写入缓存，重新分析打开的编辑器");
+        ApplicationManager.getApplication().invokeLater(() -> DaemonCodeAnalyzer.getInstance(project).restart(), project.getDisposed());
+    }
+
     /**
      * 增加缓存版本号
      */
@@ -753,6 +978,14 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
         return cacheVersion.get();
     }
 
+    /**
+     * 获取文件的缓存代数
+     */
+    @Override
+    public long getFileGeneration(@NotNull String filePath) {
+        return MyBatisFileGenerations.getInstance(project).getGeneration(filePath);
+    }
+
     /**
      * 检查缓存是否需要更新（与其他模块同步）
      */
@@ -817,20 +1050,24 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
                 }
             });
 
+            // 接口和接口方法只从存根中读取名称，不加载 AST；重载方法按 全限定名.方法名 只记录一行，跳转时按名称查找
             Map<String, PsiClass> interfaces = result.getInterfaces();
             interfaces.forEach((key, psiClass) -> {
-                JavaElementInfo javaElementInfo = TagLocator.createJavaElementInfo(psiClass, key, JavaService.TYPE_INTERFACE_CLASS);
+                JavaElementInfo javaElementInfo = TagLocator.createStubJavaElementInfo(psiClass, key, JavaService.TYPE_INTERFACE_CLASS);
                 if (javaElementInfo != null) {
                     javaElementInfoList.add(javaElementInfo);
                 }
             });
             Map<String, List<PsiMethod>> allInterfaceMethods = result.getAllInterfaceMethods();
-            allInterfaceMethods.forEach((key, list) -> list.forEach(psiMethod -> {
-                JavaElementInfo javaElementInfo = TagLocator.createJavaElementInfo(psiMethod, key, JavaService.TYPE_INTERFACE_METHOD);
+            allInterfaceMethods.forEach((key, list) -> {
+                if (list.isEmpty()) {
+                    return;
+                }
+                JavaElementInfo javaElementInfo = TagLocator.createStubJavaElementInfo(list.get(0), key, JavaService.TYPE_INTERFACE_METHOD);
                 if (javaElementInfo != null) {
                     javaElementInfoList.add(javaElementInfo);
                 }
-            }));
+            });
             Map<String, List<PsiMethodCallExpression>> classMethodCall = result.getClassMethodCall();
             classMethodCall.forEach((key, list) -> list.forEach(expression -> {
                 JavaElementInfo javaElementInfo = TagLocator.createJavaElementInfo(expression, key, JavaService.TYPE_METHOD_CALL);
@@ -851,11 +1088,13 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
 
     @Override
     public boolean checkForCacheInvalidationAndNotify(Project project) {
-        int countElementJavaTable = myBatisCache.countElementJavaTable();
-        int countElementXmlTable = myBatisCache.countElementXmlTable();
-        int countFileDigestTable = myBatisCache.countFileDigestTable();
+        // 计数由缓存写入路径增量维护，这里不查询数据库
+        MyBatisCacheHealth health = MyBatisCacheHealth.getInstance(project);
+        long countElementJavaTable = health.getJavaElementCount();
+        long countElementXmlTable = health.getXmlElementCount();
+        long countFileDigestTable = health.getFileDigestCount();
 
-        int countElementJavaTableByMethodCall = myBatisCache.countElementJavaTableByMethodCall();
+        long countElementJavaTableByMethodCall = health.getMethodCallCount();
 
         // java 为空 xml 不为空
         boolean flag1 = countElementJavaTable == 0 && countElementXmlTable != 0;
@@ -905,8 +1144,7 @@ public class MyBatisCacheManagerDefault implements MyBatisCacheManager {
 
         NotificationUtil.NotificationActionCallback leftCallBack = (currentProject, notification) -> LOG.trace("什么都不做");
 
-        if ((flag1 || flag2 || flag3 || flag4 || flag5) && notifyFlag) {
-            notifyFlag = false;
+        if ((flag1 || flag2 || flag3 || flag4 || flag5) && notifyFlag.compareAndSet(true, false)) {
             NotificationUtil.showCustomNotification(project, notificationKey, title, content, "刷新缓存", rightCallBack, "不再建议", leftCallBack, NotificationUtil.NoMoreSuggestionsFeature.RIGHT_ENABLED);
             return true;
         } else {
@@ -0,0 +1,382 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.JavaElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.setting.MyPluginSettings;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.ResourceBudget;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 行标记使用的内存快照
+ * <p>
+ * 行标记在高亮线程中计算，这里的查询只读内存，不会在高亮线程中访问数据库：
+ * <ul>
+ *     <li>命中：直接返回；缓存写入后命中的是旧数据，照常返回，同时在后台刷新</li>
+ *     <li>未命中：提交后台任务从 {@link MyBatisCache} 加载，在延迟预算内等待结果，超时则先返回已有结果，
+ *     加载完成后重启该文件的代码分析（{@link DaemonCodeAnalyzer#restart(PsiFile)}）补上行标记</li>
+ * </ul>
+ */
+public final class MyBatisCacheSnapshot implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(MyBatisCacheSnapshot.class);
+
+    private final Project project;
+
+    /**
+     * 后台加载线程（每个项目单线程，避免和全量刷新争抢数据库连接；一个项目的数据库繁忙时不影响其他项目）
+     */
+    private final ExecutorService loader;
+
+    /**
+     * 缓存代数，缓存每次写入后递增，代数不一致的条目视为旧数据
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 等待后台加载完成后需要重新分析的文件
+     */
+    private final Set<PsiFile> pendingFiles = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong overBudget = new AtomicLong();
+
+    /**
+     * 请求方拿到不完整或过期数据后、数据加载完成的次数，作为行标记结果缓存的依赖
+     */
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    private final Region<String, Set<XmlElementInfo>> xmlElementsBySqlId;
+    private final Region<String, Set<JavaElementInfo>> javaElementsBySqlId;
+    private final Region<String, Set<JavaElementInfo>> javaElementsByNamespace;
+    private final Region<String, Set<Integer>> methodCallOffsetsByFile;
+    private final Region<String, Set<JavaElementInfo>> javaElementsByFile;
+
+    public MyBatisCacheSnapshot(@NotNull Project project) {
+        this.project = project;
+        this.loader = AppExecutorUtil.createBoundedApplicationPoolExecutor("MyBatisCacheSnapshot", 1, this);
+        this.xmlElementsBySqlId = new Region<>("xmlElementsBySqlId", keys -> cache().getXmlElementsBySqlIds(keys));
+        this.javaElementsBySqlId = new Region<>("javaElementsBySqlId", keys -> cache().getJavaElementsBySqlIds(keys));
+        this.javaElementsByNamespace = new Region<>("javaElementsByNamespace", keys -> loadEach(keys, namespace -> cache().getJavaElementsByNamespace(namespace)));
+        this.methodCallOffsetsByFile = new Region<>("methodCallOffsetsByFile", keys -> loadEach(keys, filePath -> cache().getJavaElementOffsetsByFile(filePath, JavaService.TYPE_METHOD_CALL)));
+        this.javaElementsByFile = new Region<>("javaElementsByFile", keys -> loadEach(keys, filePath -> cache().getJavaElementsByFile(filePath)));
+    }
+
+    public static MyBatisCacheSnapshot getInstance(@NotNull Project project) {
+        return project.getService(MyBatisCacheSnapshot.class);
+    }
+
+    /**
+     * 行标记使用的快照；未开启只读快照或内存不足后的降级期返回 null，行标记直接读取数据库
+     */
+    @Nullable
+    public static MyBatisCacheSnapshot getForGutter(@NotNull Project project) {
+        if (!MyPluginSettings.getInstance().isNonBlockingGutter()) {
+            return null;
+        }
+        MyBatisCacheHealth health = MyBatisCacheHealth.getInstance(project);
+        if (health.isUnderMemoryPressure()) {
+            health.storageFallback();
+            return null;
+        }
+        return getInstance(project);
+    }
+
+    private MyBatisCache cache() {
+        return MyBatisCacheFactory.getRecommendedParser(project);
+    }
+
+    private static <V> Map<String, V> loadEach(@NotNull Collection<String> keys, @NotNull Function<String, V> loader) {
+        Map<String, V> result = new HashMap<>();
+        for (String key : keys) {
+            result.put(key, loader.apply(key));
+        }
+        return result;
+    }
+
+    // ========================= 查询（只读内存） =========================
+
+    @NotNull
+    public Map<String, Set<XmlElementInfo>> getXmlElementsBySqlIds(@NotNull PsiFile requester, @NotNull Collection<String> sqlIds, long deadlineNanos) {
+        return xmlElementsBySqlId.get(requester, sqlIds, deadlineNanos);
+    }
+
+    @NotNull
+    public Map<String, Set<JavaElementInfo>> getJavaElementsBySqlIds(@NotNull PsiFile requester, @NotNull Collection<String> sqlIds, long deadlineNanos) {
+        return javaElementsBySqlId.get(requester, sqlIds, deadlineNanos);
+    }
+
+    @NotNull
+    public Set<JavaElementInfo> getJavaElementsByNamespace(@NotNull PsiFile requester, @NotNull String namespace, long deadlineNanos) {
+        return javaElementsByNamespace.get(requester, List.of(namespace), deadlineNanos).getOrDefault(namespace, Collections.emptySet());
+    }
+
+    @NotNull
+    public Set<Integer> getMethodCallOffsets(@NotNull PsiFile requester, @NotNull String javaFilePath, long deadlineNanos) {
+        return methodCallOffsetsByFile.get(requester, List.of(javaFilePath), deadlineNanos).getOrDefault(javaFilePath, Collections.emptySet());
+    }
+
+    @NotNull
+    public Set<JavaElementInfo> getJavaElementsByFile(@NotNull PsiFile requester, @NotNull String javaFilePath, long deadlineNanos) {
+        return javaElementsByFile.get(requester, List.of(javaFilePath), deadlineNanos).getOrDefault(javaFilePath, Collections.emptySet());
+    }
+
+    // ========================= 失效与统计 =========================
+
+    /**
+     * 缓存已写入，快照中的所有条目变为旧数据（仍可返回，下次访问时在后台刷新）
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * 内存不足时丢弃所有条目（之后按需重新加载）
+     *
+     * @return 丢弃的条目数
+     */
+    public int dropAll() {
+        return xmlElementsBySqlId.clear() + javaElementsBySqlId.clear() + javaElementsByNamespace.clear() + methodCallOffsetsByFile.clear() + javaElementsByFile.clear();
+    }
+
+    /**
+     * 请求方拿到的不完整或过期数据被补齐时递增（行标记结果缓存以此丢弃基于这些数据的结果）
+     */
+    @NotNull
+    public ModificationTracker getModificationTracker() {
+        return modificationCount::get;
+    }
+
+    /**
+     * 记录一次超出延迟预算的行标记计算
+     */
+    public void reportOverBudget(@NotNull String providerName, @NotNull PsiFile file, long elapsedMs, long budgetMs) {
+        overBudget.incrementAndGet();
+        LOG.info(providerName + " 超出延迟预算: " + file.getName() + " 耗时 " + elapsedMs + "ms，预算 " + budgetMs + "ms，" + getStatistics());
+    }
+
+    @NotNull
+    public String getStatistics() {
+        return "命中: " + hits.get() + "，未命中: " + misses.get() + "，后台加载: " + loads.get() + "，超出预算: " + overBudget.get();
+    }
+
+    /**
+     * 项目关闭时释放等待重新分析的文件，后台仍在执行的加载任务不再持有项目中的 PSI
+     */
+    @Override
+    public void dispose() {
+        pendingFiles.clear();
+    }
+
+    private void restartPendingFiles() {
+        if (pendingFiles.isEmpty()) {
+            return;
+        }
+        List<PsiFile> files = new ArrayList<>(pendingFiles);
+        pendingFiles.removeAll(files);
+        modificationCount.incrementAndGet();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            DaemonCodeAnalyzer daemonCodeAnalyzer = DaemonCodeAnalyzer.getInstance(project);
+            for (PsiFile file : files) {
+                if (file.isValid()) {
+                    daemonCodeAnalyzer.restart(file);
+                }
+            }
+        }, project.getDisposed());
+    }
+
+    /**
+     * 快照中的一个区域：键 -> 值（缓存中不存在的键保存空值，避免重复加载）
+     */
+    private final class Region<K, V> {
+
+        private final String name;
+        private final Function<Collection<K>, Map<K, V>> loader;
+        private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+        /**
+         * 正在后台加载的键，避免重复提交
+         */
+        private final Set<K> loading = ConcurrentHashMap.newKeySet();
+
+        Region(@NotNull String name, @NotNull Function<Collection<K>, Map<K, V>> loader) {
+            this.name = name;
+            this.loader = loader;
+        }
+
+        @NotNull
+        Map<K, V> get(@NotNull PsiFile requester, @NotNull Collection<K> keys, long deadlineNanos) {
+            Map<K, V> result = new HashMap<>();
+            List<K> missing = new ArrayList<>();
+            List<K> toLoad = new ArrayList<>();
+            long currentGeneration = generation.get();
+            for (K key : keys) {
+                Entry<V> entry = entries.get(key);
+                if (entry == null) {
+                    missing.add(key);
+                    toLoad.add(key);
+                } else {
+                    result.put(key, entry.value());
+                    if (entry.generation() != currentGeneration) {
+                        toLoad.add(key);
+                    }
+                }
+            }
+            hits.addAndGet(keys.size() - missing.size());
+            if (toLoad.isEmpty()) {
+                return result;
+            }
+            misses.addAndGet(missing.size());
+
+            // 已在加载中的键不再重复提交
+            toLoad.removeIf(key -> !loading.add(key));
+            Future<?> future = null;
+            if (!toLoad.isEmpty()) {
+                try {
+                    future = loader.submit(() -> load(toLoad, requester));
+                } catch (RejectedExecutionException e) {
+                    // 项目已关闭，加载线程已停止
+                    loading.removeAll(toLoad);
+                    return result;
+                }
+            }
+            if (missing.isEmpty()) {
+                return result;
+            }
+
+            // 未命中：在延迟预算内等待后台加载
+            if (future != null) {
+                awaitUntil(future, deadlineNanos);
+            }
+            if (!collect(missing, result)) {
+                // 预算内没有加载完成，加载完成后重新分析该文件
+                pendingFiles.add(requester);
+                if (collect(missing, result)) {
+                    pendingFiles.remove(requester);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 清空区域，返回清空的条目数
+         */
+        int clear() {
+            int size = entries.size();
+            entries.clear();
+            return size;
+        }
+
+        /**
+         * 把已加载的键放入结果，全部加载完成时返回 true
+         */
+        private boolean collect(@NotNull List<K> keys, @NotNull Map<K, V> result) {
+            boolean complete = true;
+            for (K key : keys) {
+                Entry<V> entry = entries.get(key);
+                if (entry == null) {
+                    complete = false;
+                } else {
+                    result.put(key, entry.value());
+                }
+            }
+            return complete;
+        }
+
+        private void load(@NotNull List<K> keys, @NotNull PsiFile requester) {
+            long loadGeneration = generation.get();
+            boolean changed = false;
+            try {
+                if (project.isDisposed()) {
+                    return;
+                }
+                Map<K, V> loaded = loader.apply(keys);
+                loads.incrementAndGet();
+                // 每个区域的条目数上限由资源预算设置，超过后清空重新加载
+                if (entries.size() + keys.size() > ResourceBudget.maxMemoryCacheEntries()) {
+                    LOG.debug(name + " 条目数超过上限，清空快照区域");
+                    entries.clear();
+                }
+                for (K key : keys) {
+                    V value = loaded.get(key);
+                    Entry<V> previous = entries.put(key, new Entry<>(value != null ? value : emptyValue(), loadGeneration));
+                    if (previous != null && !Objects.equals(previous.value(), value != null ? value : emptyValue())) {
+                        changed = true;
+                    }
+                }
+            } catch (RuntimeException e) {
+                // 加载失败不重启请求方的分析，避免失败后反复重试；其他加载登记的文件不受影响
+                LOG.warn(name + " 后台加载失败: " + e.getMessage(), e);
+                pendingFiles.remove(requester);
+                return;
+            } finally {
+                loading.removeAll(keys);
+            }
+            if (changed) {
+                // 旧数据与新数据不一致，请求方需要重新分析
+                pendingFiles.add(requester);
+            }
+            restartPendingFiles();
+        }
+
+        @SuppressWarnings("unchecked")
+        private V emptyValue() {
+            return (V) Collections.emptySet();
+        }
+    }
+
+    private record Entry<V>(V value, long generation) {
+    }
+
+    /**
+     * 在截止时间前等待任务完成，期间响应取消
+     */
+    private static void awaitUntil(@NotNull Future<?> future, long deadlineNanos) {
+        while (!future.isDone()) {
+            ProgressManager.checkCanceled();
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            try {
+                future.get(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(5)), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ignored) {
+                // 继续等待
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                return;
+            }
+        }
+    }
+}
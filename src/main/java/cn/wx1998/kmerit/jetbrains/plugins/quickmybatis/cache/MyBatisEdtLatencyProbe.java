@@ -0,0 +1,87 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 刷新期间的界面卡顿测量
+ * <p>
+ * 定时向 EDT 投递一个空任务，记录从投递到执行的延迟；延迟的最大值即刷新期间界面最长的无响应时间
+ * （长时间的读操作会让写操作和输入在 EDT 上排队等待）
+ */
+final class MyBatisEdtLatencyProbe implements AutoCloseable {
+
+    /**
+     * 采样间隔
+     */
+    private static final long SAMPLE_INTERVAL_MS = 50;
+
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+
+    /**
+     * 上一次投递的任务是否还未执行
+     */
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final ScheduledFuture<?> future;
+    private volatile long postedAt;
+
+    private MyBatisEdtLatencyProbe() {
+        this.future = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(this::sample, SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 开始测量
+     */
+    @NotNull
+    static MyBatisEdtLatencyProbe start() {
+        return new MyBatisEdtLatencyProbe();
+    }
+
+    private void sample() {
+        if (!pending.compareAndSet(false, true)) {
+            // 上一个任务仍在排队，EDT 仍处于卡顿中
+            record(System.nanoTime() - postedAt);
+            return;
+        }
+        postedAt = System.nanoTime();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            record(System.nanoTime() - postedAt);
+            samples.incrementAndGet();
+            pending.set(false);
+        }, ModalityState.any());
+    }
+
+    private void record(long latencyNanos) {
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    /**
+     * 测量期间 EDT 的最长响应延迟（毫秒）
+     */
+    long getMaxLatencyMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    /**
+     * 采样次数
+     */
+    long getSampleCount() {
+        return samples.get();
+    }
+
+    /**
+     * 结束测量
+     */
+    @Override
+    public void close() {
+        future.cancel(false);
+    }
+}
@@ -0,0 +1,70 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按文件记录的缓存代数
+ * <p>
+ * 缓存写入时只递增与写入内容相关的文件（写入的文件本身，以及与写入的 SQL ID 关联的 Java/XML 文件）的代数，
+ * 行标记的计算结果以文件修改时间戳 + 文件代数为键缓存，代数不变时重复计算可直接复用
+ */
+public final class MyBatisFileGenerations {
+
+    /**
+     * 代数计数器，每次递增都分配一个新的代数
+     */
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * 全部文件共同的最小代数（清空缓存时递增）
+     */
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    /**
+     * 文件路径 -> 该文件最近一次相关写入的代数
+     */
+    private final Map<String, Long> fileGenerations = new ConcurrentHashMap<>();
+
+    public MyBatisFileGenerations() {
+    }
+
+    public static MyBatisFileGenerations getInstance(@NotNull Project project) {
+        return project.getService(MyBatisFileGenerations.class);
+    }
+
+    /**
+     * 获取文件当前的代数
+     */
+    public long getGeneration(@NotNull String filePath) {
+        Long generation = fileGenerations.get(filePath);
+        return generation == null ? globalGeneration.get() : Math.max(generation, globalGeneration.get());
+    }
+
+    /**
+     * 递增指定文件的代数
+     */
+    public void bump(@NotNull Collection<String> filePaths) {
+        if (filePaths.isEmpty()) {
+            return;
+        }
+        long generation = counter.incrementAndGet();
+        for (String filePath : filePaths) {
+            fileGenerations.put(filePath, generation);
+        }
+    }
+
+    /**
+     * 递增所有文件的代数
+     */
+    public void bumpAll() {
+        // 先提升全局代数再清空，保证并发读取到的代数不会回退
+        globalGeneration.set(counter.incrementAndGet());
+        fileGenerations.clear();
+    }
+}
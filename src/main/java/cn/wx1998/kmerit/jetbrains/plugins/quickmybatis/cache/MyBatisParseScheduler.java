@@ -0,0 +1,325 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.ResourceBudget;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * 全量刷新的文件解析调度
+ * <p>
+ * <ul>
+ *     <li>编辑器中打开的文件及其关联文件（{@link MyBatisRefreshPriority}）排在最前，全部解析完成后回调调用方立即写入</li>
+ *     <li>最长任务优先：其余文件按上次刷新记录的解析耗时从大到小安排，没有记录的文件按文件大小和已知文件的平均速度估算，
+ *     耗时最长的文件最先开始，不会在刷新末尾拖住整个进度</li>
+ *     <li>多个工作线程从同一个有序队列中取文件，实际参与解析的线程数由控制器根据 CPU 占用和 GC 时间占比调整：
+ *     GC 压力大时减半，CPU 接近饱和或超出后台 CPU 占比时逐个减少，有空闲时逐个增加；线程数上限和读取文件的速率
+ *     遵循资源预算（{@link ResourceBudget}）</li>
+ *     <li>记录每个文件本次的解析耗时，刷新结束后由调用方写回缓存，供下次刷新排序</li>
+ * </ul>
+ */
+final class MyBatisParseScheduler {
+
+    private static final Logger LOG = Logger.getInstance(MyBatisParseScheduler.class);
+
+    /**
+     * 并行度调整间隔
+     */
+    private static final long ADJUST_INTERVAL_MS = 500;
+
+    /**
+     * 等待和空闲线程的轮询间隔，期间检查取消和异常
+     */
+    private static final long POLL_INTERVAL_MS = 50;
+
+    /**
+     * GC 时间占比超过该值时并行度减半
+     */
+    private static final double GC_PRESSURE_HIGH = 0.10;
+
+    /**
+     * GC 时间占比低于该值时才允许增加并行度
+     */
+    private static final double GC_PRESSURE_LOW = 0.05;
+
+    /**
+     * 系统 CPU 占用超过该值时减少并行度
+     */
+    private static final double CPU_LOAD_HIGH = 0.90;
+
+    /**
+     * 系统 CPU 占用低于该值时增加并行度
+     */
+    private static final double CPU_LOAD_LOW = 0.75;
+
+    private final String name;
+    private final ProgressIndicator indicator;
+    private final Map<String, Long> knownCosts;
+    private final MyBatisRefreshPriority priority;
+
+    /**
+     * 本次刷新测得的解析耗时（文件路径 -> 微秒）
+     */
+    private final Map<String, Long> measuredCosts = new ConcurrentHashMap<>();
+
+    private final int maxWorkers = ResourceBudget.maxWorkerThreads();
+
+    /**
+     * 当前允许参与解析的线程数，编号不小于该值的线程暂停取文件
+     */
+    private final AtomicInteger activeWorkers = new AtomicInteger(Math.max(1, maxWorkers / 2));
+
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicInteger doneCount = new AtomicInteger();
+
+    /**
+     * 尚未解析完成的优先文件数
+     */
+    private final AtomicInteger priorityRemaining = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile boolean aborted;
+
+    private long lastGcTimeMs;
+    private long lastSampleNanos;
+    private volatile int minActive = Integer.MAX_VALUE;
+    private volatile int maxActive;
+
+    /**
+     * @param name       调度名称（日志）
+     * @param indicator  刷新任务的进度指示器，取消后停止分配文件
+     * @param knownCosts 上次刷新记录的解析耗时（文件路径 -> 微秒）
+     * @param priority   优先刷新的文件
+     */
+    MyBatisParseScheduler(@NotNull String name, @NotNull ProgressIndicator indicator, @NotNull Map<String, Long> knownCosts, @NotNull MyBatisRefreshPriority priority) {
+        this.name = name;
+        this.indicator = indicator;
+        this.knownCosts = knownCosts;
+        this.priority = priority;
+    }
+
+    /**
+     * 按耗时从大到小并行处理所有文件，全部处理完后返回
+     *
+     * @param files    待处理的文件
+     * @param task         处理单个文件（在工作线程上执行，需自行获取读操作）
+     * @param priorityDone 优先文件全部处理完成（在工作线程上回调，没有优先文件时不回调）
+     * @param progress     已处理的文件数（在调用方线程上回调，用于更新进度）
+     */
+    void execute(@NotNull List<VirtualFile> files, @NotNull Consumer<VirtualFile> task, @NotNull Runnable priorityDone, @NotNull IntConsumer progress) {
+        List<VirtualFile> ordered = orderByCost(files);
+        int priorityCount = (int) ordered.stream().filter(priority::isPriority).count();
+        priorityRemaining.set(priorityCount);
+        int workers = Math.min(maxWorkers, Math.max(1, ordered.size()));
+        CountDownLatch workersDone = new CountDownLatch(workers);
+        lastGcTimeMs = totalGcTimeMs();
+        lastSampleNanos = System.nanoTime();
+        ScheduledFuture<?> controller = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(this::adjustParallelism, ADJUST_INTERVAL_MS, ADJUST_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < workers; i++) {
+                int workerId = i;
+                AppExecutorUtil.getAppExecutorService().execute(() -> runWorker(workerId, ordered, task, priorityDone, workersDone));
+            }
+            while (!workersDone.await(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                progress.accept(doneCount.get());
+                checkState();
+            }
+            progress.accept(doneCount.get());
+            checkState();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        } finally {
+            aborted = aborted || workersDone.getCount() > 0;
+            controller.cancel(false);
+        }
+        LOG.info("[" + name + "] 解析调度完成，文件 " + ordered.size() + " 个，耗时 " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms，优先 " + priorityCount + " 个，已知耗时 " + countKnown(ordered) + " 个；并行度 " + (minActive == Integer.MAX_VALUE ? activeWorkers.get() : minActive) + "~" + Math.max(maxActive, activeWorkers.get()) + "/" + maxWorkers);
+    }
+
+    /**
+     * 本次刷新测得的解析耗时（文件路径 -> 微秒）
+     */
+    @NotNull
+    Map<String, Long> getMeasuredCosts() {
+        return measuredCosts;
+    }
+
+    // ========================= 排序 =========================
+
+    /**
+     * 优先文件在前，再按预计耗时从大到小排序；没有记录的文件按文件大小乘以已知文件的平均每字节耗时估算
+     */
+    @NotNull
+    private List<VirtualFile> orderByCost(@NotNull List<VirtualFile> files) {
+        long knownMicros = 0;
+        long knownBytes = 0;
+        for (VirtualFile file : files) {
+            Long cost = knownCosts.get(file.getPath());
+            if (cost != null) {
+                knownMicros += cost;
+                knownBytes += file.getLength();
+            }
+        }
+        double microsPerByte = knownBytes > 0 ? (double) knownMicros / knownBytes : 1.0;
+        Map<VirtualFile, Double> estimated = new HashMap<>();
+        for (VirtualFile file : files) {
+            Long cost = knownCosts.get(file.getPath());
+            estimated.put(file, cost != null ? cost.doubleValue() : file.getLength() * microsPerByte);
+        }
+        List<VirtualFile> ordered = new ArrayList<>(files);
+        ordered.sort(Comparator.comparing((VirtualFile file) -> !priority.isPriority(file)).thenComparing(Comparator.comparingDouble((VirtualFile file) -> estimated.get(file)).reversed()));
+        return ordered;
+    }
+
+    private int countKnown(@NotNull List<VirtualFile> files) {
+        int count = 0;
+        for (VirtualFile file : files) {
+            if (knownCosts.containsKey(file.getPath())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // ========================= 工作线程 =========================
+
+    private void runWorker(int workerId, @NotNull List<VirtualFile> files, @NotNull Consumer<VirtualFile> task, @NotNull Runnable priorityDone, @NotNull CountDownLatch workersDone) {
+        try {
+            while (!aborted && failure.get() == null && !indicator.isCanceled()) {
+                if (nextIndex.get() >= files.size()) {
+                    return;
+                }
+                if (workerId >= activeWorkers.get()) {
+                    // 并行度被调低，暂停取文件
+                    Thread.sleep(POLL_INTERVAL_MS);
+                    continue;
+                }
+                int index = nextIndex.getAndIncrement();
+                if (index >= files.size()) {
+                    return;
+                }
+                VirtualFile file = files.get(index);
+                // IO 速率上限在流水线计算摘要（从磁盘读取文件）时申请，解析时不重复申请
+                long start = System.nanoTime();
+                task.accept(file);
+                measuredCosts.put(file.getPath(), Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+                doneCount.incrementAndGet();
+                if (priority.isPriority(file) && priorityRemaining.decrementAndGet() == 0) {
+                    priorityDone.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            aborted = true;
+        } catch (ProcessCanceledException e) {
+            // 读操作或流水线被取消（项目关闭、刷新取消）
+            aborted = true;
+        } catch (Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+                LOG.warn("[" + name + "] 文件解析异常: " + e.getMessage(), e);
+            }
+        } finally {
+            workersDone.countDown();
+        }
+    }
+
+    /**
+     * 检查是否需要停止（取消、工作线程异常）
+     */
+    private void checkState() {
+        Throwable error = failure.get();
+        if (error != null) {
+            aborted = true;
+            throw new RuntimeException("文件解析调度[" + name + "]执行失败", error);
+        }
+        if (aborted || indicator.isCanceled()) {
+            aborted = true;
+            throw new ProcessCanceledException();
+        }
+    }
+
+    // ========================= 并行度控制 =========================
+
+    /**
+     * 根据上一个采样周期的 GC 时间占比和系统 CPU 占用调整并行度
+     */
+    private void adjustParallelism() {
+        long now = System.nanoTime();
+        long gcTimeMs = totalGcTimeMs();
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - lastSampleNanos));
+        double gcRatio = (double) (gcTimeMs - lastGcTimeMs) / elapsedMs;
+        lastGcTimeMs = gcTimeMs;
+        lastSampleNanos = now;
+        double cpuLoad = systemCpuLoad();
+        double processCpuLoad = processCpuLoad();
+
+        int current = activeWorkers.get();
+        int target = current;
+        if (gcRatio > GC_PRESSURE_HIGH) {
+            target = Math.max(1, current / 2);
+        } else if (cpuLoad > CPU_LOAD_HIGH || processCpuLoad > ResourceBudget.maxCpuShare()) {
+            target = Math.max(1, current - 1);
+        } else if (gcRatio < GC_PRESSURE_LOW && cpuLoad >= 0 && cpuLoad < CPU_LOAD_LOW) {
+            target = Math.min(maxWorkers, current + 1);
+        }
+        if (target != current) {
+            activeWorkers.set(target);
+            LOG.debug("[" + name + "] 解析并行度调整: " + current + " -> " + target + "（CPU " + Math.round(cpuLoad * 100) + "%，GC " + Math.round(gcRatio * 100) + "%）");
+        }
+        minActive = Math.min(minActive, target);
+        maxActive = Math.max(maxActive, target);
+    }
+
+    /**
+     * IDE 进程的 CPU 占用（0~1），无法获取时返回负数
+     */
+    private static double processCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+            return sunOs.getProcessCpuLoad();
+        }
+        return -1;
+    }
+
+    private static long totalGcTimeMs() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long time = gc.getCollectionTime();
+            if (time > 0) {
+                total += time;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 系统 CPU 占用（0~1），无法获取时返回负数
+     */
+    private static double systemCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+            return sunOs.getCpuLoad();
+        }
+        return -1;
+    }
+}
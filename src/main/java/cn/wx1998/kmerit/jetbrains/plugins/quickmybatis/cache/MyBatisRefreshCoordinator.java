@@ -0,0 +1,206 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import com.google.common.util.concurrent.Striped;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 缓存刷新的并发协调
+ * <p>
+ * <ul>
+ *     <li>增量刷新（文件变化、定时扫描）按文件路径分段加锁，涉及不同文件的刷新可以并行执行，
+ *     涉及同一文件的刷新互斥；多个文件的锁按固定顺序获取，不会互相死锁；
+ *     涉及的文件在持锁后重新计算，超出已持有的锁时释放并以更大的范围重试</li>
+ *     <li>每次刷新请求在提交时分配一个递增的代数，同一文件已有更新的请求时，旧请求直接跳过，
+ *     保证同一文件的刷新结果按请求顺序生效</li>
+ *     <li>全量刷新独占执行，正在执行的定时扫描在处理下一个文件前让出；刷新全部缓存时开始前递增全量刷新轮次，
+ *     之前提交、尚未执行的增量刷新全部作废</li>
+ * </ul>
+ */
+final class MyBatisRefreshCoordinator {
+
+    private static final Logger LOG = Logger.getInstance(MyBatisRefreshCoordinator.class);
+
+    /**
+     * 文件锁的分段数
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * 按文件路径分段的锁
+     */
+    private final Striped<Lock> fileLocks = Striped.lock(LOCK_STRIPES);
+
+    /**
+     * 增量刷新持有读锁，全量刷新持有写锁；公平模式下全量刷新等待时新的增量刷新排在其后
+     */
+    private final ReentrantReadWriteLock refreshLock = new ReentrantReadWriteLock(true);
+
+    /**
+     * 全量刷新轮次，每次全量刷新开始前递增
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * 正在等待或执行的全量刷新数量
+     */
+    private final AtomicInteger pendingFullRefreshes = new AtomicInteger();
+
+    /**
+     * 刷新请求代数计数器
+     */
+    private final AtomicLong generationCounter = new AtomicLong();
+
+    /**
+     * 文件路径 -> 该文件最近一次刷新请求的代数
+     */
+    private final Map<String, Long> latestRequested = new ConcurrentHashMap<>();
+
+    /**
+     * 登记一次文件刷新请求（在提交时调用，而不是在执行时调用）
+     */
+    @NotNull
+    Ticket request(@NotNull String filePath) {
+        long generation = generationCounter.incrementAndGet();
+        latestRequested.merge(filePath, generation, Math::max);
+        return new Ticket(filePath, generation, epoch.get());
+    }
+
+    /**
+     * 以文件当前的请求代数执行刷新，不登记新的请求（定时扫描只刷新文件本身，不能取代文件变化触发的关联刷新）
+     */
+    @NotNull
+    Ticket observe(@NotNull String filePath) {
+        return new Ticket(filePath, latestRequested.getOrDefault(filePath, 0L), epoch.get());
+    }
+
+    /**
+     * 持有相关文件的锁执行一次增量刷新
+     *
+     * @param ticket      提交时登记的请求
+     * @param lockedPaths 刷新过程中会写入的所有文件
+     * @param action      刷新操作
+     * @return 是否执行；请求已被全量刷新或同一文件更新的请求取代时返回 false
+     */
+    boolean runIncremental(@NotNull Ticket ticket, @NotNull Collection<String> lockedPaths, @NotNull Runnable action) {
+        return runIncremental(ticket, () -> lockedPaths, Function.identity(), paths -> action.run());
+    }
+
+    /**
+     * 持有相关文件的锁执行一次增量刷新，刷新计划（涉及的文件）在持锁后重新计算
+     * <p>
+     * 获取锁之前计算的计划可能已被其他文件的刷新改变：持锁后重新计算一次，涉及的文件都已加锁时按新的计划执行，
+     * 否则释放所有锁，以两次计算的并集重新加锁，直到持有的锁覆盖计划涉及的全部文件
+     *
+     * @param ticket        提交时登记的请求
+     * @param planner       计算刷新计划（读取缓存中的关联关系，会被调用多次）
+     * @param lockedPathsOf 计划中刷新过程会写入的所有文件
+     * @param action        按持锁后计算的计划执行刷新
+     * @return 是否执行；请求已被全量刷新或同一文件更新的请求取代时返回 false
+     */
+    <P> boolean runIncremental(@NotNull Ticket ticket, @NotNull Supplier<P> planner, @NotNull Function<? super P, ? extends Collection<String>> lockedPathsOf, @NotNull Consumer<? super P> action) {
+        refreshLock.readLock().lock();
+        try {
+            if (ticket.epoch() != epoch.get()) {
+                LOG.debug("增量刷新已被全量刷新取代: " + ticket.filePath());
+                return false;
+            }
+            Set<String> lockedPaths = new HashSet<>(lockedPathsOf.apply(planner.get()));
+            lockedPaths.add(ticket.filePath());
+            while (true) {
+                List<Lock> locks = new ArrayList<>();
+                for (Lock lock : fileLocks.bulkGet(lockedPaths)) {
+                    lock.lock();
+                    locks.add(lock);
+                }
+                try {
+                    if (isSuperseded(ticket)) {
+                        LOG.debug("增量刷新已被更新的请求取代: " + ticket.filePath() + "，代数: " + ticket.generation());
+                        return false;
+                    }
+                    P plan = planner.get();
+                    Collection<String> requiredPaths = lockedPathsOf.apply(plan);
+                    if (lockedPaths.containsAll(requiredPaths)) {
+                        action.accept(plan);
+                        return true;
+                    }
+                    LOG.debug("增量刷新涉及的文件在加锁期间增加，扩大范围重试: " + ticket.filePath());
+                    lockedPaths.addAll(requiredPaths);
+                } finally {
+                    for (int i = locks.size() - 1; i >= 0; i--) {
+                        locks.get(i).unlock();
+                    }
+                }
+            }
+        } finally {
+            refreshLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 独占执行一次全量刷新
+     *
+     * @param supersedePending 是否覆盖所有文件（刷新全部缓存）；覆盖时之前提交的增量刷新全部作废，
+     *                         只刷新部分缓存时增量刷新在全量刷新结束后继续执行
+     */
+    void runExclusive(boolean supersedePending, @NotNull Runnable action) {
+        pendingFullRefreshes.incrementAndGet();
+        if (supersedePending) {
+            epoch.incrementAndGet();
+        }
+        refreshLock.writeLock().lock();
+        try {
+            if (supersedePending) {
+                latestRequested.clear();
+            }
+            action.run();
+        } finally {
+            refreshLock.writeLock().unlock();
+            pendingFullRefreshes.decrementAndGet();
+        }
+    }
+
+    /**
+     * 当前的全量刷新轮次
+     */
+    long currentEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * 在指定轮次开始的增量工作是否应当让出（有全量刷新在等待、执行或已经完成）
+     */
+    boolean isPreempted(long startEpoch) {
+        return pendingFullRefreshes.get() > 0 || epoch.get() != startEpoch;
+    }
+
+    private boolean isSuperseded(@NotNull Ticket ticket) {
+        Long latest = latestRequested.get(ticket.filePath());
+        return latest != null && latest > ticket.generation();
+    }
+
+    /**
+     * 一次文件刷新请求
+     *
+     * @param filePath   触发刷新的文件
+     * @param generation 请求代数
+     * @param epoch      提交时的全量刷新轮次
+     */
+    record Ticket(@NotNull String filePath, long generation, long epoch) {
+    }
+}
@@ -0,0 +1,420 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.ProjectFileUtils;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.LowMemoryWatcher;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 全量刷新的分阶段流水线
+ * <p>
+ * 解析（调用方线程，PSI/文件解析）-> 构建缓存行 -> 计算文件摘要 -> 写入数据库，
+ * 提交的解析结果不能引用 PSI（PSI 可能在之后的写操作中失效，也会让整个文件的 PSI 树驻留在队列中），
+ * 需要 PSI 的工作在解析的读操作中完成，构建阶段只做不依赖读操作的转换，
+ * 预筛选跳过的文件不经过解析，只计算并写入文件摘要（与解析过的文件一致，定时扫描不会把它们当作新增文件），
+ * 各阶段之间用有界队列连接，CPU 密集的解析与 IO 密集的摘要计算、H2 写入同时进行，
+ * 刷新总耗时接近最慢的一个阶段，而不是所有阶段之和；队列有界，解析过快时阻塞等待，内存占用与项目规模无关；
+ * IDE 内存不足时写入批次减半（不小于 {@link #MIN_BATCH_SIZE}），尽快写入并释放已构建的缓存行
+ *
+ * @param <P> 解析结果
+ * @param <R> 缓存行
+ */
+final class MyBatisRefreshPipeline<P, R> implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getInstance(MyBatisRefreshPipeline.class);
+
+    /**
+     * 解析结果队列容量（按文件）
+     */
+    private static final int PARSED_QUEUE_CAPACITY = 256;
+
+    /**
+     * 缓存行批次队列容量（按批次）
+     */
+    private static final int BATCH_QUEUE_CAPACITY = 4;
+
+    /**
+     * 内存不足时写入批次缩小的下限
+     */
+    private static final int MIN_BATCH_SIZE = 100;
+
+    /**
+     * 队列轮询间隔，期间检查取消和其他阶段的异常
+     */
+    private static final long POLL_INTERVAL_MS = 100;
+
+    /**
+     * 解析结果队列的结束标记
+     */
+    private static final Object END_OF_PARSED = new Object();
+
+    private final String name;
+    private final ProgressIndicator indicator;
+    private final MyBatisCacheHealth health;
+
+    /**
+     * 每批写入的缓存行数，内存不足时减半
+     */
+    private volatile int batchSize;
+    private final Function<P, List<R>> rowBuilder;
+    private final Function<R, String> filePathOf;
+    private final BiConsumer<List<R>, Map<String, String>> writer;
+
+    private final BlockingQueue<Object> parsedQueue = new ArrayBlockingQueue<>(PARSED_QUEUE_CAPACITY);
+    private final BlockingQueue<Batch<R>> rowQueue = new ArrayBlockingQueue<>(BATCH_QUEUE_CAPACITY);
+    private final BlockingQueue<Batch<R>> digestQueue = new ArrayBlockingQueue<>(BATCH_QUEUE_CAPACITY);
+
+    /**
+     * 三个后台阶段的完成信号
+     */
+    private final CountDownLatch stagesDone = new CountDownLatch(3);
+
+    /**
+     * 任一阶段的异常，出现后所有阶段停止
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong buildNanos = new AtomicLong();
+    private final AtomicLong digestNanos = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+
+    private volatile boolean aborted;
+    private boolean finished;
+
+    /**
+     * 内存不足监听，流水线结束时注销
+     */
+    private final Disposable lowMemoryDisposable = Disposer.newDisposable("MyBatisRefreshPipeline");
+
+    /**
+     * @param name       流水线名称（日志）
+     * @param indicator  刷新任务的进度指示器，取消后各阶段停止
+     * @param health     缓存健康状态（记录内存不足时的降级次数）
+     * @param batchSize  每批写入的缓存行数
+     * @param rowBuilder 构建缓存行
+     * @param filePathOf 缓存行所属的文件（计算摘要）
+     * @param writer     写入缓存行和文件摘要
+     */
+    MyBatisRefreshPipeline(@NotNull String name, @NotNull ProgressIndicator indicator, @NotNull MyBatisCacheHealth health, int batchSize, @NotNull Function<P, List<R>> rowBuilder, @NotNull Function<R, String> filePathOf, @NotNull BiConsumer<List<R>, Map<String, String>> writer) {
+        this.name = name;
+        this.indicator = indicator;
+        this.health = health;
+        this.batchSize = batchSize;
+        this.rowBuilder = rowBuilder;
+        this.filePathOf = filePathOf;
+        this.writer = writer;
+        LowMemoryWatcher.register(this::onLowMemory, lowMemoryDisposable);
+        AppExecutorUtil.getAppExecutorService().execute(() -> runStage(this::buildRows));
+        AppExecutorUtil.getAppExecutorService().execute(() -> runStage(this::calculateDigests));
+        AppExecutorUtil.getAppExecutorService().execute(() -> runStage(this::writeRows));
+    }
+
+    /**
+     * 提交一个文件的解析结果，下游队列已满时阻塞
+     *
+     * @param parsed    解析结果
+     * @param parseNano 解析该文件花费的时间（统计）
+     */
+    void submit(@NotNull P parsed, long parseNano) {
+        parseNanos.addAndGet(parseNano);
+        try {
+            put(parsedQueue, parsed);
+        } catch (StageStoppedException e) {
+            throw stopped();
+        }
+    }
+
+    /**
+     * 登记一个跳过解析的文件，只计算并写入它的摘要，下游队列已满时阻塞
+     *
+     * @param filePath 文件路径
+     */
+    void skip(@NotNull String filePath) {
+        try {
+            put(parsedQueue, new SkippedFile(filePath));
+        } catch (StageStoppedException e) {
+            throw stopped();
+        }
+    }
+
+    /**
+     * 已提交的解析结果不再等待凑满一批，立即构建、计算摘要并写入，写入完成后执行回调（在写入线程上）
+     *
+     * @param afterWrite 写入完成后的回调
+     */
+    void flush(@NotNull Runnable afterWrite) {
+        try {
+            put(parsedQueue, new FlushRequest(afterWrite));
+        } catch (StageStoppedException e) {
+            throw stopped();
+        }
+    }
+
+    /**
+     * 解析结束，等待后续阶段处理完所有数据
+     *
+     * @return 写入的缓存行数
+     */
+    int finish() {
+        try {
+            put(parsedQueue, END_OF_PARSED);
+            while (!stagesDone.await(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                checkState();
+            }
+            checkState();
+        } catch (StageStoppedException e) {
+            throw stopped();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            aborted = true;
+            throw new ProcessCanceledException(e);
+        }
+        finished = true;
+        LOG.info("[" + name + "] 刷新流水线完成，写入 " + writtenRows.get() + " 条，总耗时 " + toMs(System.nanoTime() - startNanos) + "ms；各阶段耗时: 解析 " + toMs(parseNanos.get()) + "ms，构建 " + toMs(buildNanos.get()) + "ms，摘要 " + toMs(digestNanos.get()) + "ms，写入 " + toMs(writeNanos.get()) + "ms");
+        return (int) writtenRows.get();
+    }
+
+    /**
+     * 未正常结束时（取消或异常）停止所有阶段
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            aborted = true;
+        }
+        Disposer.dispose(lowMemoryDisposable);
+    }
+
+    /**
+     * 内存不足：写入批次减半，已构建的缓存行尽快写入
+     */
+    private void onLowMemory() {
+        int current = batchSize;
+        if (current <= MIN_BATCH_SIZE) {
+            return;
+        }
+        batchSize = Math.max(MIN_BATCH_SIZE, current / 2);
+        health.batchShrunk();
+        LOG.info("[" + name + "] IDE 内存不足，写入批次 " + current + " -> " + batchSize);
+    }
+
+    // ========================= 阶段 =========================
+
+    /**
+     * 构建缓存行，按批次交给摘要阶段
+     */
+    @SuppressWarnings("unchecked")
+    private void buildRows() {
+        List<R> rows = new ArrayList<>(batchSize);
+        Set<String> skippedPaths = new HashSet<>();
+        while (true) {
+            Object item = take(parsedQueue);
+            if (item == END_OF_PARSED) {
+                break;
+            }
+            if (item instanceof FlushRequest flushRequest) {
+                // 不足一批也立即交给下游，写入后回调
+                put(rowQueue, new Batch<>(rows, skippedPaths, Collections.emptyMap(), flushRequest.afterWrite()));
+                rows = new ArrayList<>(batchSize);
+                skippedPaths = new HashSet<>();
+                continue;
+            }
+            if (item instanceof SkippedFile skippedFile) {
+                skippedPaths.add(skippedFile.filePath());
+            } else {
+                long start = System.nanoTime();
+                rows.addAll(rowBuilder.apply((P) item));
+                buildNanos.addAndGet(System.nanoTime() - start);
+            }
+            if (rows.size() + skippedPaths.size() >= batchSize) {
+                put(rowQueue, new Batch<>(rows, skippedPaths, Collections.emptyMap(), null));
+                rows = new ArrayList<>(batchSize);
+                skippedPaths = new HashSet<>();
+            }
+        }
+        if (!rows.isEmpty() || !skippedPaths.isEmpty()) {
+            put(rowQueue, new Batch<>(rows, skippedPaths, Collections.emptyMap(), null));
+        }
+        put(rowQueue, Batch.end());
+    }
+
+    /**
+     * 计算批次中所有文件的摘要
+     */
+    private void calculateDigests() {
+        while (true) {
+            Batch<R> batch = take(rowQueue);
+            if (batch.isEnd()) {
+                break;
+            }
+            if (batch.rows().isEmpty() && batch.skippedPaths().isEmpty()) {
+                put(digestQueue, batch);
+                continue;
+            }
+            long start = System.nanoTime();
+            Set<String> filePaths = batch.rows().stream().map(filePathOf).filter(Objects::nonNull).filter(path -> !path.trim().isEmpty()).collect(Collectors.toSet());
+            filePaths.addAll(batch.skippedPaths());
+            // 从磁盘读取文件，按 IO 速率上限等待，刷新取消时停止等待
+            Map<String, String> digests = ProjectFileUtils.calculateFileDigestsParallel(filePaths, indicator);
+            digestNanos.addAndGet(System.nanoTime() - start);
+            put(digestQueue, new Batch<>(batch.rows(), batch.skippedPaths(), digests, batch.afterWrite()));
+        }
+        put(digestQueue, Batch.end());
+    }
+
+    /**
+     * 写入数据库（单线程，避免批量写入互相争抢连接和锁）
+     */
+    private void writeRows() {
+        while (true) {
+            Batch<R> batch = take(digestQueue);
+            if (batch.isEnd()) {
+                break;
+            }
+            if (!batch.rows().isEmpty() || !batch.digests().isEmpty()) {
+                long start = System.nanoTime();
+                writer.accept(batch.rows(), batch.digests());
+                writeNanos.addAndGet(System.nanoTime() - start);
+                writtenRows.addAndGet(batch.rows().size());
+            }
+            if (batch.afterWrite() != null) {
+                batch.afterWrite().run();
+            }
+        }
+    }
+
+    private void runStage(@NotNull Runnable stage) {
+        try {
+            stage.run();
+        } catch (StageStoppedException ignored) {
+            // 其他阶段失败或刷新被取消
+        } catch (ProcessCanceledException e) {
+            // 阶段内的读操作被取消（项目关闭），停止整个流水线
+            aborted = true;
+        } catch (Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+                LOG.warn("[" + name + "] 刷新流水线阶段异常: " + e.getMessage(), e);
+            }
+        } finally {
+            stagesDone.countDown();
+        }
+    }
+
+    // ========================= 队列 =========================
+
+    private <T> void put(@NotNull BlockingQueue<T> queue, @NotNull T item) {
+        try {
+            while (!queue.offer(item, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                checkState();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StageStoppedException();
+        }
+    }
+
+    @NotNull
+    private <T> T take(@NotNull BlockingQueue<T> queue) {
+        try {
+            while (true) {
+                T item = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+                checkState();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StageStoppedException();
+        }
+    }
+
+    /**
+     * 检查是否需要停止（取消、其他阶段异常）
+     */
+    private void checkState() {
+        if (aborted || failure.get() != null || indicator.isCanceled()) {
+            throw new StageStoppedException();
+        }
+    }
+
+    /**
+     * 调用方线程上的停止原因：阶段异常原样向上抛出，否则视为取消
+     */
+    @NotNull
+    private RuntimeException stopped() {
+        aborted = true;
+        Throwable error = failure.get();
+        if (error != null) {
+            return new RuntimeException("刷新流水线[" + name + "]执行失败", error);
+        }
+        return new ProcessCanceledException();
+    }
+
+    private static long toMs(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * 立即写入已提交数据的请求
+     */
+    private record FlushRequest(Runnable afterWrite) {
+    }
+
+    /**
+     * 跳过解析、只需要写入摘要的文件
+     */
+    private record SkippedFile(String filePath) {
+    }
+
+    /**
+     * 一批缓存行及其文件摘要
+     *
+     * @param skippedPaths 跳过解析、只写入摘要的文件
+     * @param afterWrite   写入完成后的回调，可为空
+     */
+    private record Batch<R>(List<R> rows, Set<String> skippedPaths, Map<String, String> digests, Runnable afterWrite) {
+
+        static <R> Batch<R> end() {
+            return new Batch<>(null, null, null, null);
+        }
+
+        boolean isEnd() {
+            return rows == null;
+        }
+    }
+
+    /**
+     * 流水线被停止（取消或其他阶段失败）
+     */
+    private static final class StageStoppedException extends RuntimeException {
+        StageStoppedException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.JavaElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 刷新优先级：编辑器中打开的文件及其直接关联的文件优先刷新
+ * <p>
+ * 关联文件有两个来源：
+ * <ul>
+ *     <li>缓存中的映射：打开的接口对应的 Mapper XML，打开的 Mapper XML 对应的接口（不含方法调用）</li>
+ *     <li>同名文件：缓存为空（首次刷新）或映射已过期时，按 UserMapper.java / UserMapper.xml 的命名约定匹配</li>
+ * </ul>
+ * 在清除缓存之前收集，刷新过程中不再变化
+ */
+final class MyBatisRefreshPriority {
+
+    private static final Logger LOG = Logger.getInstance(MyBatisRefreshPriority.class);
+
+    private final Set<String> filePaths;
+    private final Set<String> fileNames;
+
+    private MyBatisRefreshPriority(@NotNull Set<String> filePaths, @NotNull Set<String> fileNames) {
+        this.filePaths = filePaths;
+        this.fileNames = fileNames;
+    }
+
+    /**
+     * 收集当前打开的 Java / XML 文件及其关联文件
+     */
+    @NotNull
+    static MyBatisRefreshPriority collect(@NotNull Project project, @NotNull MyBatisCache cache) {
+        Set<String> filePaths = new HashSet<>();
+        Set<String> fileNames = new HashSet<>();
+        if (project.isDisposed()) {
+            return new MyBatisRefreshPriority(filePaths, fileNames);
+        }
+        for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+            String extension = file.getExtension();
+            if (!"java".equals(extension) && !"xml".equals(extension)) {
+                continue;
+            }
+            String filePath = file.getPath();
+            filePaths.add(filePath);
+            fileNames.add(file.getNameWithoutExtension());
+            if ("java".equals(extension)) {
+                // 接口 -> Mapper XML
+                Set<String> sqlIds = cache.getSqlIdsByJavaFile(filePath);
+                addLinked(filePaths, cache.getXmlElementsBySqlIds(sqlIds).values(), XmlElementInfo::getFilePath);
+            } else {
+                // Mapper XML -> 接口（调用方不算直接关联）
+                Set<String> sqlIds = cache.getSqlIdsByXmlFile(filePath);
+                List<JavaElementInfo> declarations = new ArrayList<>();
+                for (Set<JavaElementInfo> elements : cache.getJavaElementsBySqlIds(sqlIds).values()) {
+                    for (JavaElementInfo element : elements) {
+                        if (!JavaService.TYPE_METHOD_CALL.equals(element.getElementType())) {
+                            declarations.add(element);
+                        }
+                    }
+                }
+                addLinked(filePaths, List.of(declarations), JavaElementInfo::getFilePath);
+            }
+        }
+        LOG.debug("优先刷新的文件: " + filePaths.size() + " 个，同名匹配: " + fileNames);
+        return new MyBatisRefreshPriority(filePaths, fileNames);
+    }
+
+    private static <T> void addLinked(@NotNull Set<String> filePaths, @NotNull Collection<? extends Collection<T>> groups, @NotNull Function<T, String> filePathOf) {
+        for (Collection<T> group : groups) {
+            for (T element : group) {
+                String filePath = filePathOf.apply(element);
+                if (filePath != null) {
+                    filePaths.add(filePath);
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否需要优先刷新
+     */
+    boolean isPriority(@NotNull VirtualFile file) {
+        return filePaths.contains(file.getPath()) || fileNames.contains(file.getNameWithoutExtension());
+    }
+
+    /**
+     * 是否需要优先刷新（按路径，不做同名匹配）
+     */
+    boolean isPriority(@NotNull String filePath) {
+        return filePaths.contains(filePath);
+    }
+
+    boolean isEmpty() {
+        return filePaths.isEmpty();
+    }
+
+    /**
+     * 优先刷新的文件排在前面，其余保持原有顺序
+     */
+    @NotNull
+    <T> List<T> prioritize(@NotNull Collection<T> items, @NotNull Function<T, String> filePathOf) {
+        List<T> ordered = new ArrayList<>(items);
+        if (!isEmpty()) {
+            ordered.sort(Comparator.comparing((T item) -> !isPriority(filePathOf.apply(item))));
+        }
+        return ordered;
+    }
+}
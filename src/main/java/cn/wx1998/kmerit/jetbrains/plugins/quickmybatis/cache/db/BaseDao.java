@@ -12,11 +12,31 @@ import java.beans.PropertyDescriptor;
 import java.sql.Connection;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
  * DAO 基础类，封装公共资源和方法
  */
 public abstract class BaseDao {
+
+    /**
+     * IN 条件中单次查询的最大参数个数
+     */
+    protected static final int IN_BATCH_SIZE = 500;
+
+    /**
+     * 统计批量插入中新增的行数（MySQL 模式下 ON DUPLICATE KEY UPDATE 新增的行计数为 1，命中已有记录时为 2）
+     */
+    protected static int countInsertedRows(int[] batch) {
+        int inserted = 0;
+        if (batch != null) {
+            for (int count : batch) {
+                if (count == 1 || count == Statement.SUCCESS_NO_INFO) inserted++;
+            }
+        }
+        return inserted;
+    }
+
     // 自定义BeanProcessor，实现下划线转驼峰
     protected final static BeanProcessor beanProcessor = new BeanProcessor() {
         @Override
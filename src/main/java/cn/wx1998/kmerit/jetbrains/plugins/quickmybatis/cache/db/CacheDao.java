@@ -9,6 +9,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -59,15 +60,35 @@ public class CacheDao extends BaseDao {
         return xmlElementDao.getBySqlId(sqlId);
     }
 
+    public List<XmlElementInfo> getXmlElementsBySqlIds(Collection<String> sqlIds) {
+        return xmlElementDao.getBySqlIds(sqlIds);
+    }
+
+    public List<JavaElementInfo> getJavaElementsBySqlIds(Collection<String> sqlIds) {
+        return javaElementDao.getBySqlIds(sqlIds);
+    }
+
     public List<JavaElementInfo> getJavaElementsBySqlId(String sqlId) {
         return javaElementDao.getBySqlId(sqlId);
     }
 
+    public List<JavaElementInfo> getJavaElementsByNamespace(String namespace) {
+        return javaElementDao.getByNamespace(namespace);
+    }
+
 
     public Set<String> getSqlIdsByJavaFile(String javaFilePath) {
         return javaElementDao.getSqlIdsByFile(javaFilePath);
     }
 
+    public List<JavaElementInfo> getJavaElementsByFile(String javaFilePath) {
+        return javaElementDao.getByFilePath(javaFilePath);
+    }
+
+    public Set<Integer> getJavaElementOffsetsByFile(String javaFilePath, String elementType) {
+        return javaElementDao.getStartOffsetsByFile(javaFilePath, elementType);
+    }
+
     public Set<String> getSqlIdsByXmlFile(String xmlFilePath) {
         return javaElementDao.getSqlIdsByFile(xmlFilePath);
     }
@@ -84,10 +105,22 @@ public class CacheDao extends BaseDao {
         return fileDigestDao.getAllFileDigest();
     }
 
+    public Map<String, Long> getAllParseCosts() {
+        return fileDigestDao.getAllParseCosts();
+    }
+
+    public void saveParseCosts(Map<String, Long> parseCosts) {
+        fileDigestDao.batchUpdateParseCost(parseCosts);
+    }
+
     public int clearJavaFileCache(String javaFilePath) {
         return javaElementDao.deleteByFilePath(javaFilePath);
     }
 
+    public int clearJavaFileCache(String javaFilePath, String elementType) {
+        return javaElementDao.deleteByFilePathAndType(javaFilePath, elementType);
+    }
+
     public int clearXmlFileCache(String xmlFilePath) {
         return xmlElementDao.deleteByFilePath(xmlFilePath);
     }
@@ -131,6 +164,10 @@ public class CacheDao extends BaseDao {
         return xmlElementDao.getAll();
     }
 
+    public Set<String> getAllXmlSqlIds() {
+        return xmlElementDao.getAllSqlIds();
+    }
+
     /**
      * 获取文件涉及的所有 SqlId（联合element_java + element_xml）
      *
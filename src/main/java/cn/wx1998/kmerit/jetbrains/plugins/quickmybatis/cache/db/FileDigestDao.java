@@ -54,7 +54,7 @@ public class FileDigestDao extends BaseDao {
     }
 
     /**
-     * 批量插入：批量添加文件摘要（已存在则忽略）
+     * 批量插入：批量添加文件摘要（已存在则更新），返回新增的行数
      */
     public int batchInsert(Map<String, String> digestMap) {
         if (digestMap.isEmpty()) {
@@ -79,9 +79,7 @@ public class FileDigestDao extends BaseDao {
             int[] batch = queryRunner.batch(conn, sql, params);
             conn.commit();
             conn.setAutoCommit(true);
-            int affectedRows = 0;
-            if (batch != null) for (int count : batch) affectedRows += count;
-            return affectedRows;
+            return countInsertedRows(batch);
         } catch (SQLException e) {
             throw new RuntimeException("批量插入文件摘要码失败", e);
         }
@@ -138,6 +136,46 @@ public class FileDigestDao extends BaseDao {
         }
     }
 
+    /**
+     * 查询所有文件上次解析的耗时（微秒），未记录的文件不返回
+     */
+    public Map<String, Long> getAllParseCosts() {
+        String sql = "SELECT file_path, parse_cost FROM file_digest WHERE parse_cost > 0";
+        try (Connection conn = getConnection()) {
+            List<Map<String, Object>> rawResult = queryRunner.query(conn, sql, new MapListHandler());
+            Map<String, Long> result = new HashMap<>();
+            for (Map<String, Object> row : rawResult) {
+                String filePath = (String) row.get("file_path");
+                Object parseCost = row.get("parse_cost");
+                if (filePath != null && parseCost instanceof Number number) {
+                    result.put(filePath, number.longValue());
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException("查询文件解析耗时失败", e);
+        }
+    }
+
+    /**
+     * 批量更新文件的解析耗时（微秒），只更新已有摘要记录的文件
+     */
+    public void batchUpdateParseCost(Map<String, Long> parseCostMap) {
+        if (parseCostMap.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE file_digest SET parse_cost = ? WHERE file_path = ?";
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            Object[][] params = parseCostMap.entrySet().stream().filter(entry -> entry.getKey() != null && entry.getValue() != null).map(entry -> new Object[]{entry.getValue(), entry.getKey()}).toArray(Object[][]::new);
+            queryRunner.batch(conn, sql, params);
+            conn.commit();
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new RuntimeException("批量更新文件解析耗时失败", e);
+        }
+    }
+
     /**
      * 查询所有文件的摘要信息（Key=文件路径，Value=摘要码）
      */
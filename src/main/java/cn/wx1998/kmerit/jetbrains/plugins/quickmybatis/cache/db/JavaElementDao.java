@@ -8,6 +8,9 @@ import org.jetbrains.annotations.NotNull;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -25,7 +28,7 @@ public class JavaElementDao extends BaseDao {
      * 按需查询：根据 SQL ID 获取 Java 元素
      */
     public List<JavaElementInfo> getBySqlId(String sqlId) {
-        String sql = "SELECT sql_id, file_path, element_type, start_offset, end_offset FROM element_java WHERE sql_id = ?";
+        String sql = "SELECT sql_id, file_path, element_type, start_offset, end_offset, line_number, label, file_name FROM element_java WHERE sql_id = ?";
         try (Connection conn = getConnection()) {
             return queryRunner.query(conn, sql, new BeanListHandler<>(JavaElementInfo.class, rowProcessor), sqlId);
         } catch (SQLException e) {
@@ -34,21 +37,59 @@ public class JavaElementDao extends BaseDao {
     }
 
     /**
-     * 增量插入：批量添加 Java 元素（避免全量重写）
+     * 按需查询：根据 mapper 的 namespace 获取 Java 元素（类、接口以及值为 namespace 的字段）
+     * <p>
+     * 只按 sql_id 等值过滤，可以直接使用 idx_unique_java_element 索引的第一列，不会扫描全表
+     */
+    @NotNull
+    public List<JavaElementInfo> getByNamespace(@NotNull String namespace) {
+        String sql = "SELECT sql_id, file_path, element_type, start_offset, end_offset, line_number, label, file_name FROM element_java WHERE sql_id = ? AND element_type <> 'methodCall'";
+        try (Connection conn = getConnection()) {
+            return queryRunner.query(conn, sql, new BeanListHandler<>(JavaElementInfo.class, rowProcessor), namespace);
+        } catch (SQLException e) {
+            throw new RuntimeException("根据 namespace 查询 Java 元素失败", e);
+        }
+    }
+
+    /**
+     * 批量查询：根据多个 SQL ID 获取 Java 元素（按 IN_BATCH_SIZE 分批，共用一个连接）
+     */
+    @NotNull
+    public List<JavaElementInfo> getBySqlIds(@NotNull Collection<String> sqlIds) {
+        if (sqlIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> sqlIdList = new ArrayList<>(sqlIds);
+        List<JavaElementInfo> result = new ArrayList<>();
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < sqlIdList.size(); from += IN_BATCH_SIZE) {
+                List<String> batch = sqlIdList.subList(from, Math.min(from + IN_BATCH_SIZE, sqlIdList.size()));
+                String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+                String sql = "SELECT sql_id, file_path, element_type, start_offset, end_offset, line_number, label, file_name FROM element_java WHERE sql_id IN (%s)".formatted(placeholders);
+                result.addAll(queryRunner.query(conn, sql, new BeanListHandler<>(JavaElementInfo.class, rowProcessor), batch.toArray()));
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException("批量查询 Java 元素失败", e);
+        }
+    }
+
+    /**
+     * 增量插入：批量添加 Java 元素（避免全量重写），返回新增的行数
      */
     public int batchInsert(List<JavaElementInfo> elements) {
         if (elements.isEmpty()) {
             return 0;
         }
-        String sql = "INSERT INTO element_java (sql_id, file_path, element_type, start_offset, end_offset) VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE  end_offset = VALUES(end_offset) ";
+        String sql = "INSERT INTO element_java (sql_id, file_path, element_type, start_offset, end_offset, line_number, label, file_name) VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE  end_offset = VALUES(end_offset), line_number = VALUES(line_number), label = VALUES(label), file_name = VALUES(file_name) ";
 
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
-            Object[][] params = elements.stream().map(info -> new Object[]{info.getSqlId(), info.getFilePath(), info.getElementType(), info.getStartOffset(), info.getEndOffset()}).toArray(Object[][]::new);
+            Object[][] params = elements.stream().map(info -> new Object[]{info.getSqlId(), info.getFilePath(), info.getElementType(), info.getStartOffset(), info.getEndOffset(), info.getLineNumber(), info.getLabel(), info.getFileName()}).toArray(Object[][]::new);
             int[] batch = queryRunner.batch(conn, sql, params);
             conn.commit();
             conn.setAutoCommit(true);
-            return batch == null ? 0 : batch.length;
+            return countInsertedRows(batch);
         } catch (SQLException e) {
             throw new RuntimeException("批量插入 Java 元素失败", e);
         }
@@ -145,6 +186,33 @@ public class JavaElementDao extends BaseDao {
         }
     }
 
+    /**
+     * 根据文件路径获取该文件中的所有Java元素
+     */
+    @NotNull
+    public List<JavaElementInfo> getByFilePath(@NotNull String javaFilePath) {
+        String sql = "SELECT sql_id, file_path, element_type, start_offset, end_offset, line_number, label, file_name FROM element_java WHERE file_path = ?";
+        try (Connection conn = getConnection()) {
+            return queryRunner.query(conn, sql, new BeanListHandler<>(JavaElementInfo.class, rowProcessor), javaFilePath);
+        } catch (SQLException e) {
+            throw new RuntimeException("查询Java文件[" + javaFilePath + "]的元素失败", e);
+        }
+    }
+
+    /**
+     * 根据文件路径和元素类型获取元素的起始偏移量集合
+     */
+    @NotNull
+    public Set<Integer> getStartOffsetsByFile(@NotNull String javaFilePath, @NotNull String elementType) {
+        String sql = "SELECT start_offset FROM element_java WHERE file_path = ? AND element_type = ?";
+        try (Connection conn = getConnection()) {
+            List<Integer> offsetList = queryRunner.query(conn, sql, new ColumnListHandler<>("start_offset"), javaFilePath, elementType);
+            return new HashSet<>(offsetList);
+        } catch (SQLException e) {
+            throw new RuntimeException("查询Java文件[" + javaFilePath + "]的元素偏移量失败", e);
+        }
+    }
+
     /**
      * 根据文件路径删除所有关联的Java元素记录
      */
@@ -160,12 +228,27 @@ public class JavaElementDao extends BaseDao {
         }
     }
 
+    /**
+     * 根据文件路径删除指定类型的Java元素记录
+     */
+    public int deleteByFilePathAndType(@NotNull String javaFilePath, @NotNull String elementType) {
+        if (javaFilePath.trim().isEmpty()) {
+            throw new IllegalArgumentException("Java文件路径不能为空");
+        }
+        String sql = "DELETE FROM element_java WHERE file_path = ? AND element_type = ?";
+        try (Connection conn = getConnection()) {
+            return queryRunner.update(conn, sql, javaFilePath, elementType);
+        } catch (SQLException e) {
+            throw new RuntimeException("删除Java文件[" + javaFilePath + "]关联的" + elementType + "缓存记录失败", e);
+        }
+    }
+
     /**
      * 查询所有Java元素记录
      */
     @NotNull
     public Set<JavaElementInfo> getAll() {
-        String sql = "SELECT sql_id, file_path, element_type, start_offset, end_offset FROM element_java";
+        String sql = "SELECT sql_id, file_path, element_type, start_offset, end_offset, line_number, label, file_name FROM element_java";
         try (Connection conn = getConnection()) {
             List<JavaElementInfo> allList = queryRunner.query(conn, sql, new BeanListHandler<>(JavaElementInfo.class, rowProcessor));
             return new HashSet<>(allList);
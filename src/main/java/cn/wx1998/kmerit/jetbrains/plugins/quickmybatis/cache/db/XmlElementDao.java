@@ -8,6 +8,9 @@ import org.jetbrains.annotations.NotNull;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -25,7 +28,7 @@ public class XmlElementDao extends BaseDao {
      * 按需查询：根据 SQL ID 获取 Xml 元素
      */
     public List<XmlElementInfo> getBySqlId(String sqlId) {
-        String sql = "SELECT sql_id, file_path, tag_name, database_id, start_offset, end_offset FROM element_xml WHERE sql_id = ?";
+        String sql = "SELECT sql_id, file_path, tag_name, database_id, start_offset, end_offset, line_number, label, file_name FROM element_xml WHERE sql_id = ?";
         try (Connection conn = getConnection()) {
             return queryRunner.query(conn, sql, new BeanListHandler<>(XmlElementInfo.class, rowProcessor), sqlId);
         } catch (SQLException e) {
@@ -34,21 +37,44 @@ public class XmlElementDao extends BaseDao {
     }
 
     /**
-     * 增量插入：批量添加 Xml 元素（避免全量重写）
+     * 批量查询：根据多个 SQL ID 获取 XML 元素（按 IN_BATCH_SIZE 分批，共用一个连接）
+     */
+    @NotNull
+    public List<XmlElementInfo> getBySqlIds(@NotNull Collection<String> sqlIds) {
+        if (sqlIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> sqlIdList = new ArrayList<>(sqlIds);
+        List<XmlElementInfo> result = new ArrayList<>();
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < sqlIdList.size(); from += IN_BATCH_SIZE) {
+                List<String> batch = sqlIdList.subList(from, Math.min(from + IN_BATCH_SIZE, sqlIdList.size()));
+                String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+                String sql = "SELECT sql_id, file_path, tag_name, database_id, start_offset, end_offset, line_number, label, file_name FROM element_xml WHERE sql_id IN (%s)".formatted(placeholders);
+                result.addAll(queryRunner.query(conn, sql, new BeanListHandler<>(XmlElementInfo.class, rowProcessor), batch.toArray()));
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException("批量查询 XML 元素失败", e);
+        }
+    }
+
+    /**
+     * 增量插入：批量添加 Xml 元素（避免全量重写），返回新增的行数
      */
     public int batchInsert(List<XmlElementInfo> elements) {
         if (elements.isEmpty()) {
             return 0;
         }
-        String sql = "INSERT INTO element_xml (sql_id, file_path, tag_name, database_id, start_offset, end_offset) VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE start_offset = VALUES(start_offset), end_offset = VALUES(end_offset) ";
+        String sql = "INSERT INTO element_xml (sql_id, file_path, tag_name, database_id, start_offset, end_offset, line_number, label, file_name) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE start_offset = VALUES(start_offset), end_offset = VALUES(end_offset), line_number = VALUES(line_number), label = VALUES(label), file_name = VALUES(file_name) ";
 
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
-            Object[][] params = elements.stream().map(info -> new Object[]{info.getSqlId(), info.getFilePath(), info.getTagName(), info.getDatabaseId(), info.getStartOffset(), info.getEndOffset()}).toArray(Object[][]::new);
+            Object[][] params = elements.stream().map(info -> new Object[]{info.getSqlId(), info.getFilePath(), info.getTagName(), info.getDatabaseId(), info.getStartOffset(), info.getEndOffset(), info.getLineNumber(), info.getLabel(), info.getFileName()}).toArray(Object[][]::new);
             int[] batch = queryRunner.batch(conn, sql, params);
             conn.commit();
             conn.setAutoCommit(true);
-            return batch == null ? 0 : batch.length;
+            return countInsertedRows(batch);
         } catch (SQLException e) {
             throw new RuntimeException("批量插入 XML 元素失败", e);
         }
@@ -167,7 +193,7 @@ public class XmlElementDao extends BaseDao {
      */
     @NotNull
     public Set<XmlElementInfo> getAll() {
-        String sql = "SELECT sql_id, file_path, tag_name, database_id, start_offset, end_offset FROM element_xml";
+        String sql = "SELECT sql_id, file_path, tag_name, database_id, start_offset, end_offset, line_number, label, file_name FROM element_xml";
         try (Connection conn = getConnection()) {
             List<XmlElementInfo> allList = queryRunner.query(conn, sql, new BeanListHandler<>(XmlElementInfo.class, rowProcessor));
             return new HashSet<>(allList);
@@ -176,6 +202,19 @@ public class XmlElementDao extends BaseDao {
         }
     }
 
+    /**
+     * 查询所有不重复的 SQL ID（包含 mapper 的 namespace）
+     */
+    @NotNull
+    public Set<String> getAllSqlIds() {
+        String sql = "SELECT DISTINCT sql_id FROM element_xml";
+        try (Connection conn = getConnection()) {
+            List<String> sqlIdList = queryRunner.query(conn, sql, new ColumnListHandler<>("sql_id"));
+            return new HashSet<>(sqlIdList);
+        } catch (SQLException e) {
+            throw new RuntimeException("查询所有XML元素的SQL ID失败", e);
+        }
+    }
 
     /**
      * 清空 element_xml 表所有数据（全局缓存清理）
@@ -6,6 +6,11 @@ import org.jetbrains.annotations.NotNull;
  * 存储与SQL ID关联的Java元素信息（类、方法、字段、方法调用）
  */
 public class JavaElementInfo implements Comparable<JavaElementInfo> {
+    /**
+     * 未记录偏移量（Mapper 接口和接口方法从 Java 存根中提取，存根中没有偏移量，跳转时按名称查找）
+     */
+    public static final int NO_OFFSET = -1;
+
     /**
      * Java文件路径（唯一标识）
      */
@@ -27,6 +32,19 @@ public class JavaElementInfo implements Comparable<JavaElementInfo> {
      */
     private String sqlId;
 
+    /**
+     * 元素所在行号（从 1 开始，0 表示未知）
+     */
+    private int lineNumber;
+    /**
+     * 元素的简短显示文本（弹出列表中展示，不需要打开目标文件）
+     */
+    private String label;
+    /**
+     * 元素所在文件名（弹出列表中展示）
+     */
+    private String fileName;
+
     public JavaElementInfo() {
     }
 
@@ -62,6 +80,13 @@ public class JavaElementInfo implements Comparable<JavaElementInfo> {
         this.endOffset = endOffset;
     }
 
+    /**
+     * 是否记录了偏移量
+     */
+    public boolean hasOffset() {
+        return startOffset >= 0;
+    }
+
     public String getElementType() {
         return elementType;
     }
@@ -78,6 +103,30 @@ public class JavaElementInfo implements Comparable<JavaElementInfo> {
         this.sqlId = sqlId;
     }
 
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public void setLineNumber(int lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
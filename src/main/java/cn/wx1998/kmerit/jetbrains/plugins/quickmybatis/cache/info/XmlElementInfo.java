@@ -31,6 +31,19 @@ public class XmlElementInfo implements Comparable<XmlElementInfo> {
      */
     private String databaseId;
 
+    /**
+     * 元素所在行号（从 1 开始，0 表示未知）
+     */
+    private int lineNumber;
+    /**
+     * 元素的简短显示文本（弹出列表中展示，不需要打开目标文件）
+     */
+    private String label;
+    /**
+     * 元素所在文件名（弹出列表中展示）
+     */
+    private String fileName;
+
     public XmlElementInfo() {
     }
 
@@ -92,6 +105,30 @@ public class XmlElementInfo implements Comparable<XmlElementInfo> {
         this.databaseId = databaseId;
     }
 
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public void setLineNumber(int lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
     // 重写equals和hashCode
     @Override
     public boolean equals(Object o) {
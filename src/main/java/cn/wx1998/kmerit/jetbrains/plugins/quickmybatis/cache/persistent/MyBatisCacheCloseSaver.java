@@ -9,7 +9,11 @@ public class MyBatisCacheCloseSaver implements ProjectCloseHandler {
 
     @Override
     public boolean canClose(@NotNull Project project) {
-        DataBaseManager.getInstance(project).close();
+        // 缓存未激活时不创建数据源
+        DataBaseManager dataBaseManager = project.getServiceIfCreated(DataBaseManager.class);
+        if (dataBaseManager != null) {
+            dataBaseManager.close();
+        }
         return true;
     }
 }
@@ -1,7 +1,6 @@
 package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.persistent;
 
-import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheManager;
-import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheManagerFactory;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheActivation;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.ProjectActivity;
 import kotlin.Unit;
@@ -11,40 +10,13 @@ import org.jetbrains.annotations.Nullable;
 
 public class MyBatisCacheStartupLoader implements ProjectActivity {
 
-    private long lastKnownVersion = 0;
-
     @Nullable
     @Override
     public Object execute(@NotNull Project project, @NotNull Continuation<? super Unit> continuation) {
 
-        MyBatisCacheManager cacheManager = MyBatisCacheManagerFactory.getRecommendedParser(project);
-        this.lastKnownVersion = cacheManager.getCurrentCacheVersion();
-
-        // 注册缓存检查定时任务
-        scheduleVersionCheck(project);
+        // 不在启动时创建缓存管理器：项目之前激活过（项目配置中有记录）或索引探测发现 MyBatis 后才在后台激活（激活时检查一次缓存状态）
+        MyBatisCacheActivation.getInstance(project).startup();
 
         return null;
     }
-
-    /**
-     * 定时检查缓存版本是否更新
-     */
-    private void scheduleVersionCheck(Project project) {
-        java.util.Timer timer = new java.util.Timer(true);
-        timer.scheduleAtFixedRate(new java.util.TimerTask() {
-            @Override
-            public void run() {
-                if (project.isDisposed()) {
-                    timer.cancel();
-                    return;
-                }
-                MyBatisCacheManager cacheManager = MyBatisCacheManagerFactory.getRecommendedParser(project);
-                boolean b = cacheManager.checkForCacheInvalidationAndNotify(project);
-            }
-        }, 0, 5000); // 每5秒检查一次
-    }
-
-    public long getLastKnownVersion() {
-        return lastKnownVersion;
-    }
 }
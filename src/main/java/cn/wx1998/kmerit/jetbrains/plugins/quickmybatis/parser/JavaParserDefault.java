@@ -7,7 +7,6 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiAnnotation;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiCodeBlock;
 import com.intellij.psi.PsiExpression;
@@ -21,13 +20,10 @@ import com.intellij.psi.PsiType;
 import com.intellij.psi.util.PsiTreeUtil;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -36,6 +32,12 @@ import java.util.concurrent.ConcurrentHashMap;
 public class JavaParserDefault implements JavaParser {
 
     private static final Logger LOG = Logger.getInstance(JavaParserDefault.class);
+    // 常见测试注解列表（可根据实际需求扩展）
+    private static final List<String> TEST_ANNOTATIONS = List.of("org.junit.Test",// JUnit4测试方法
+            "org.junit.jupiter.api.Test",                                      // JUnit5测试方法
+            "org.springframework.boot.test.context.SpringBootTest",            // SpringBoot测试类
+            "org.testng.annotations.Test"                                      // TestNG测试方法
+    );
     private final Project project;
     private final MyBatisCache cacheConfig; // 全局缓存管理器
 
@@ -123,6 +125,7 @@ public class JavaParserDefault implements JavaParser {
 
     /**
      * 判断是否为测试类（
+     * 只访问类、方法的名称和注解，这些信息都保存在 Java 存根中，不会触发 AST 加载
      */
     private boolean isTestClass(PsiJavaFile file, VirtualFile virtualFile) {
         String filePath = virtualFile.getPath();
@@ -155,17 +158,9 @@ public class JavaParserDefault implements JavaParser {
      * 检查元素（类/方法）是否带有测试注解
      */
     private boolean hasTestAnnotation(PsiModifierListOwner element) {
-        // 常见测试注解列表（可根据实际需求扩展）
-        Set<String> testAnnotations = new HashSet<>(Arrays.asList("org.junit.Test",// JUnit4测试方法
-                "org.junit.jupiter.api.Test",                                      // JUnit5测试方法
-                "org.springframework.boot.test.context.SpringBootTest",            // SpringBoot测试类
-                "org.testng.annotations.Test"                                      // TestNG测试方法
-
-        ));
-
-        for (PsiAnnotation annotation : element.getAnnotations()) {
-            String qualifiedName = annotation.getQualifiedName();
-            if (qualifiedName != null && testAnnotations.contains(qualifiedName)) {
+        // hasAnnotation 会先比较短名，避免逐个解析注解的全限定名
+        for (String testAnnotation : TEST_ANNOTATIONS) {
+            if (element.hasAnnotation(testAnnotation)) {
                 return true;
             }
         }
@@ -231,6 +226,7 @@ public class JavaParserDefault implements JavaParser {
                 String className = cls.getQualifiedName();
                 // 分类存储类和接口
                 if (cls.isInterface()) {
+                    // 接口及其方法只用到全限定名、方法名和参数名，均可从存根中读取，缓存中不记录偏移量，跳转时按名称查找
                     interfaces.put(className, cls);
                     PsiMethod[] methods = cls.getMethods();
                     for (PsiMethod method : methods) {
@@ -274,8 +270,9 @@ public class JavaParserDefault implements JavaParser {
                     PsiType type = field.getType();
                     String canonicalText = type.getCanonicalText();
                     if ("java.lang.String".equals(canonicalText)) {
-                        PsiExpression initializer = field.getInitializer();
-                        String key = JavaService.parseExpression(initializer);
+                        // 常量值优先从存根中的初始化文本计算，无法计算时才访问 AST 中的初始化表达式
+                        Object constantValue = field.computeConstantValue();
+                        String key = constantValue instanceof String value ? value : JavaService.parseExpression(field.getInitializer());
 
                         if (key != null && !key.isEmpty()) {
                             if (className != null && key.startsWith(className)) {
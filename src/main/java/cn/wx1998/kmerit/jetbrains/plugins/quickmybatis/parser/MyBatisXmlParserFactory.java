@@ -24,6 +24,17 @@ public final class MyBatisXmlParserFactory {
         return MyBatisXmlParserDefault.create(project);
     }
 
+    /**
+     * 创建流式 MyBatis XML 解析器
+     * 不构建 PSI 树，直接从文件文本输出带偏移量的 XmlElementInfo，适用于全量刷新等批量场景
+     *
+     * @param project 当前项目
+     * @return 流式 MyBatis XML 解析器
+     */
+    public static MyBatisXmlStreamParser createStreamParser(@NotNull Project project) {
+        return MyBatisXmlStreamParser.create(project);
+    }
+
 
     /**
      * 获取当前环境推荐的 MyBatis XML 解析器
@@ -0,0 +1,492 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式 MyBatis XML 解析器
+ * <p>
+ * 不构建 XmlFile PSI 树，对文件文本只做一次顺序扫描（StAX 风格的拉取式解析），
+ * 直接输出 mapper、statement、sql、resultMap 的 id 与偏移量，结果即为 {@link XmlElementInfo} 行。
+ * <p>
+ * 偏移量基于 IDEA 的文档文本（换行符统一为 \n），与 PSI 解析器中 XmlTag 的 TextRange 完全一致。
+ * JDK 自带的 StAX 实现只能给出开始标签结束处的位置，且基于原始字节，因此这里使用内置的轻量扫描器。
+ */
+public class MyBatisXmlStreamParser {
+
+    private static final Logger LOG = Logger.getInstance(MyBatisXmlStreamParser.class);
+    private final Project project;
+
+    /**
+     * 构造函数
+     *
+     * @param project 当前项目实例
+     */
+    public MyBatisXmlStreamParser(Project project) {
+        this.project = project;
+        LOG.debug("为项目初始化流式MyBatis XML解析器: " + project.getName());
+    }
+
+    /**
+     * 创建流式解析器实例的工厂方法
+     *
+     * @param project 当前项目实例
+     * @return MyBatisXmlStreamParser 实例
+     */
+    public static MyBatisXmlStreamParser create(@NotNull Project project) {
+        LOG.debug("创建 MyBatisXmlStreamParser 实例");
+        return new MyBatisXmlStreamParser(project);
+    }
+
+    /**
+     * 读取文件文本：已打开的文件读取内存中的文档（包含未保存的修改），否则直接从磁盘加载
+     */
+    @Nullable
+    public static CharSequence loadText(@NotNull VirtualFile file) {
+        return ReadAction.compute(() -> {
+            if (!file.isValid() || file.isDirectory()) {
+                return null;
+            }
+            Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+            if (document != null) {
+                return document.getImmutableCharSequence();
+            }
+            return LoadTextUtil.loadText(file);
+        });
+    }
+
+    /**
+     * 解析MyBatis XML文件
+     *
+     * @param file 需要解析的XML文件
+     * @return 解析结果，如果不是有效的MyBatis XML文件则返回null
+     */
+    @Nullable
+    public StreamParseResult parse(@NotNull VirtualFile file) {
+        CharSequence text = loadText(file);
+        if (text == null) {
+            LOG.debug("无法读取XML文件内容: " + file.getPath());
+            return null;
+        }
+        return parse(file.getPath(), text);
+    }
+
+    /**
+     * 解析MyBatis XML文本
+     *
+     * @param filePath 文件路径（写入结果行）
+     * @param text     文件文本
+     * @return 解析结果，如果不是有效的MyBatis XML文件则返回null
+     */
+    @Nullable
+    public StreamParseResult parse(@NotNull String filePath, @NotNull CharSequence text) {
+        LOG.debug("开始流式解析MyBatis XML文件: " + filePath);
+        XmlPullScanner scanner = new XmlPullScanner(text);
+
+        String namespace = null;
+        int mapperStart = -1;
+        int mapperEnd = text.length();
+
+        // 当前正在读取的 mapper 直接子标签
+        String childName = null;
+        String childId = null;
+        String childDatabaseId = null;
+        int childStart = -1;
+
+        List<XmlElementInfo> statements = new ArrayList<>();
+        List<XmlElementInfo> sqlFragments = new ArrayList<>();
+        List<XmlElementInfo> resultMaps = new ArrayList<>();
+
+        // 弹出列表展示所需的文件名和行号索引
+        String fileName = filePath.substring(filePath.lastIndexOf('/') + 1);
+        int[] lineStarts = computeLineStarts(text);
+
+        int depth = 0;
+        int event;
+        while ((event = scanner.next()) != XmlPullScanner.END_DOCUMENT) {
+            if (event == XmlPullScanner.START_ELEMENT) {
+                depth++;
+                if (depth == 1) {
+                    // 根标签必须为 mapper，且有有效的 namespace
+                    if (!MyBatisXmlStructure.MAPPER_TAG.equals(scanner.getName())) {
+                        LOG.debug("文件根标签不是mapper: " + scanner.getName() + "，文件: " + filePath);
+                        return null;
+                    }
+                    String namespaceAttr = scanner.getAttributeValue("namespace");
+                    if (namespaceAttr == null || namespaceAttr.trim().isEmpty()) {
+                        LOG.debug("Mapper标签缺少有效的namespace属性: " + filePath);
+                        return null;
+                    }
+                    namespace = namespaceAttr.trim();
+                    mapperStart = scanner.getStartOffset();
+                } else if (depth == 2) {
+                    childName = scanner.getName();
+                    childId = scanner.getAttributeValue("id");
+                    childDatabaseId = scanner.getAttributeValue("databaseId");
+                    childStart = scanner.getStartOffset();
+                }
+            } else if (event == XmlPullScanner.END_ELEMENT) {
+                if (depth == 2 && childName != null && childId != null && !childId.trim().isEmpty()) {
+                    String sqlId = namespace + '.' + childId.trim();
+                    String databaseId = childDatabaseId != null ? childDatabaseId : "";
+                    XmlElementInfo info = new XmlElementInfo(filePath, childStart, scanner.getEndOffset(), childName, sqlId, databaseId);
+                    setPresentation(info, sqlId, fileName, lineStarts);
+                    if (MyBatisXmlStructure.isStatementTag(childName)) {
+                        statements.add(info);
+                    } else if (MyBatisXmlStructure.SQL_TAG.equals(childName)) {
+                        sqlFragments.add(info);
+                    } else if (MyBatisXmlStructure.RESULT_MAP_TAG.equals(childName)) {
+                        resultMaps.add(info);
+                    }
+                }
+                if (depth == 2) {
+                    childName = null;
+                } else if (depth == 1) {
+                    mapperEnd = scanner.getEndOffset();
+                }
+                depth = Math.max(0, depth - 1);
+            }
+        }
+
+        if (namespace == null) {
+            LOG.debug("文件没有根标签: " + filePath);
+            return null;
+        }
+
+        XmlElementInfo mapper = new XmlElementInfo(filePath, mapperStart, mapperEnd, MyBatisXmlStructure.MAPPER_TAG, namespace, "");
+        setPresentation(mapper, MyBatisXmlStructure.MAPPER_TAG, fileName, lineStarts);
+        LOG.debug("流式解析完成: " + filePath + "，语句数量: " + statements.size() + "，SQL片段数量: " + sqlFragments.size() + "，结果映射数量: " + resultMaps.size());
+        return new StreamParseResult(namespace, mapper, statements, sqlFragments, resultMaps);
+    }
+
+    /**
+     * 计算每一行的起始偏移量（升序）
+     */
+    private static int[] computeLineStarts(@NotNull CharSequence text) {
+        int count = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        int[] lineStarts = new int[count];
+        int line = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lineStarts[line++] = i + 1;
+            }
+        }
+        return lineStarts;
+    }
+
+    /**
+     * 写入弹出列表展示所需的显示文本、文件名和行号（从 1 开始）
+     */
+    private static void setPresentation(@NotNull XmlElementInfo info, @NotNull String label, @NotNull String fileName, int[] lineStarts) {
+        int index = Arrays.binarySearch(lineStarts, info.getStartOffset());
+        info.setLineNumber(index >= 0 ? index + 1 : -index - 1);
+        info.setLabel(label);
+        info.setFileName(fileName);
+    }
+
+    /**
+     * 流式解析结果，所有元素均以 XmlElementInfo 行的形式给出，不持有任何 PSI 引用
+     */
+    public static class StreamParseResult {
+
+        private final String namespaceName;
+        private final XmlElementInfo mapper;
+        private final List<XmlElementInfo> statements;
+        private final List<XmlElementInfo> sqlFragments;
+        private final List<XmlElementInfo> resultMaps;
+
+        StreamParseResult(String namespaceName, XmlElementInfo mapper, List<XmlElementInfo> statements, List<XmlElementInfo> sqlFragments, List<XmlElementInfo> resultMaps) {
+            this.namespaceName = namespaceName;
+            this.mapper = mapper;
+            this.statements = statements;
+            this.sqlFragments = sqlFragments;
+            this.resultMaps = resultMaps;
+        }
+
+        /**
+         * 获取命名空间
+         */
+        public String getNamespaceName() {
+            return namespaceName;
+        }
+
+        /**
+         * 获取根 mapper 标签
+         */
+        public XmlElementInfo getMapper() {
+            return mapper;
+        }
+
+        /**
+         * 获取所有SQL语句（select/insert/update/delete）
+         */
+        public List<XmlElementInfo> getStatements() {
+            return Collections.unmodifiableList(statements);
+        }
+
+        /**
+         * 获取所有SQL片段（sql）
+         */
+        public List<XmlElementInfo> getSqlFragments() {
+            return Collections.unmodifiableList(sqlFragments);
+        }
+
+        /**
+         * 获取所有结果映射（resultMap）
+         */
+        public List<XmlElementInfo> getResultMaps() {
+            return Collections.unmodifiableList(resultMaps);
+        }
+
+        /**
+         * 获取写入 element_xml 表的行：根 mapper 标签 + 所有SQL语句（与 PSI 解析器的同步逻辑一致）
+         */
+        public List<XmlElementInfo> getCacheElements() {
+            List<XmlElementInfo> result = new ArrayList<>(statements.size() + 1);
+            result.add(mapper);
+            result.addAll(statements);
+            return result;
+        }
+    }
+
+    /**
+     * 轻量的拉取式 XML 扫描器，只识别开始/结束标签及其属性
+     * 注释、CDATA、处理指令和 DOCTYPE 会被整体跳过；自闭合标签与 StAX 一样会依次产生开始和结束两个事件
+     */
+    private static final class XmlPullScanner {
+
+        static final int START_ELEMENT = 1;
+        static final int END_ELEMENT = 2;
+        static final int END_DOCUMENT = 8;
+
+        private final CharSequence text;
+        private final int length;
+        private final Map<String, String> attributes = new HashMap<>();
+        private int pos;
+        private String name;
+        private int startOffset;
+        private int endOffset;
+        private boolean pendingEnd;
+
+        XmlPullScanner(CharSequence text) {
+            this.text = text;
+            this.length = text.length();
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == ':' || c == '.';
+        }
+
+        int next() {
+            if (pendingEnd) {
+                // 自闭合标签：名称和偏移量与开始事件相同
+                pendingEnd = false;
+                attributes.clear();
+                return END_ELEMENT;
+            }
+            while (pos < length) {
+                int lt = indexOf('<', pos);
+                if (lt < 0) {
+                    pos = length;
+                    break;
+                }
+                if (startsWith(lt, "<!--")) {
+                    pos = skipPast(lt + 4, "-->");
+                } else if (startsWith(lt, "<![CDATA[")) {
+                    pos = skipPast(lt + 9, "]]>");
+                } else if (startsWith(lt, "<?")) {
+                    pos = skipPast(lt + 2, "?>");
+                } else if (startsWith(lt, "<!")) {
+                    pos = skipDeclaration(lt + 2);
+                } else if (startsWith(lt, "</")) {
+                    int nameEnd = scanName(lt + 2);
+                    name = text.subSequence(lt + 2, nameEnd).toString();
+                    int gt = indexOf('>', nameEnd);
+                    pos = gt < 0 ? length : gt + 1;
+                    startOffset = lt;
+                    endOffset = pos;
+                    attributes.clear();
+                    return END_ELEMENT;
+                } else {
+                    int nameEnd = scanName(lt + 1);
+                    if (nameEnd == lt + 1) {
+                        // 孤立的 '<'，按文本处理
+                        pos = lt + 1;
+                        continue;
+                    }
+                    name = text.subSequence(lt + 1, nameEnd).toString();
+                    startOffset = lt;
+                    attributes.clear();
+                    pos = readAttributes(nameEnd);
+                    endOffset = pos;
+                    return START_ELEMENT;
+                }
+            }
+            return END_DOCUMENT;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        @Nullable
+        String getAttributeValue(String attributeName) {
+            return attributes.get(attributeName);
+        }
+
+        /**
+         * 开始事件为 '<' 的位置；结束事件为结束标签 '</' 的位置
+         */
+        int getStartOffset() {
+            return startOffset;
+        }
+
+        /**
+         * 开始事件为开始标签 '>' 之后的位置；结束事件为结束标签 '>' 之后的位置
+         */
+        int getEndOffset() {
+            return endOffset;
+        }
+
+        /**
+         * 读取开始标签中的属性，返回开始标签结束后的位置
+         */
+        private int readAttributes(int from) {
+            int i = from;
+            while (i < length) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '>') {
+                    return i + 1;
+                } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '>') {
+                    pendingEnd = true;
+                    return i + 2;
+                } else if (c == '<') {
+                    // 开始标签未闭合，交由下一次扫描处理
+                    return i;
+                } else if (isNameChar(c)) {
+                    int attrNameEnd = scanName(i);
+                    String attrName = text.subSequence(i, attrNameEnd).toString();
+                    i = skipWhitespace(attrNameEnd);
+                    String value = "";
+                    if (i < length && text.charAt(i) == '=') {
+                        i = skipWhitespace(i + 1);
+                        if (i < length && (text.charAt(i) == '"' || text.charAt(i) == '\'')) {
+                            char quote = text.charAt(i);
+                            int close = indexOf(quote, i + 1);
+                            int valueEnd = close < 0 ? length : close;
+                            value = text.subSequence(i + 1, valueEnd).toString();
+                            i = close < 0 ? length : close + 1;
+                        } else {
+                            int valueStart = i;
+                            while (i < length && !Character.isWhitespace(text.charAt(i)) && text.charAt(i) != '>') {
+                                i++;
+                            }
+                            value = text.subSequence(valueStart, i).toString();
+                        }
+                    }
+                    // 与 XmlTag.getAttribute 一致，重复属性以第一个为准
+                    attributes.putIfAbsent(attrName, value);
+                } else {
+                    i++;
+                }
+            }
+            return length;
+        }
+
+        /**
+         * 跳过 &lt;!DOCTYPE ...&gt; 等声明，支持内部子集中的 [] 和引号
+         */
+        private int skipDeclaration(int from) {
+            int bracketDepth = 0;
+            int i = from;
+            while (i < length) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\'') {
+                    int close = indexOf(c, i + 1);
+                    i = close < 0 ? length : close + 1;
+                    continue;
+                }
+                if (c == '[') {
+                    bracketDepth++;
+                } else if (c == ']') {
+                    bracketDepth = Math.max(0, bracketDepth - 1);
+                } else if (c == '>' && bracketDepth == 0) {
+                    return i + 1;
+                }
+                i++;
+            }
+            return length;
+        }
+
+        private int scanName(int from) {
+            int i = from;
+            while (i < length && isNameChar(text.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private int skipWhitespace(int from) {
+            int i = from;
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private int skipPast(int from, String terminator) {
+            int index = indexOf(terminator, from);
+            return index < 0 ? length : index + terminator.length();
+        }
+
+        private boolean startsWith(int offset, String prefix) {
+            if (offset + prefix.length() > length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (text.charAt(offset + i) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int indexOf(char c, int from) {
+            for (int i = from; i < length; i++) {
+                if (text.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOf(String s, int from) {
+            for (int i = from; i + s.length() <= length; i++) {
+                if (startsWith(i, s)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.provider;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.JavaElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.DocumentOffsetTracker;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.TagLocator;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.Navigatable;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.FakePsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.Icon;
+import java.util.Objects;
+
+/**
+ * 基于缓存行的导航目标
+ * <p>
+ * 弹出列表直接使用缓存中的显示文本、行号和文件名渲染，不需要加载目标文件；
+ * 只有在用户选中跳转时才打开文件，偏移量经 {@link DocumentOffsetTracker} 平移到当前文档中的位置；
+ * 没有偏移量的行（从存根提取的 Mapper 接口和接口方法）跳转时按名称查找
+ */
+class CachedElementTarget extends FakePsiElement {
+
+    private final Project project;
+    private final String filePath;
+    private final int startOffset;
+    private final int endOffset;
+    private final String text;
+    private final String containerText;
+    private final Icon icon;
+    /**
+     * 没有偏移量时按名称查找所需的元素类型和 sqlId
+     */
+    private final String elementType;
+    private final String sqlId;
+
+    private CachedElementTarget(@NotNull Project project, @NotNull String filePath, int startOffset, int endOffset, @NotNull String text, @NotNull String containerText, @Nullable Icon icon) {
+        this(project, filePath, startOffset, endOffset, text, containerText, icon, null, null);
+    }
+
+    private CachedElementTarget(@NotNull Project project, @NotNull String filePath, int startOffset, int endOffset, @NotNull String text, @NotNull String containerText, @Nullable Icon icon, @Nullable String elementType, @Nullable String sqlId) {
+        this.project = project;
+        this.filePath = filePath;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.text = text;
+        this.containerText = containerText;
+        this.icon = icon;
+        this.elementType = elementType;
+        this.sqlId = sqlId;
+    }
+
+    /**
+     * 缓存行是否带有展示信息（旧版本写入的行没有，需要回退到定位 PSI）
+     */
+    static boolean hasPresentation(@NotNull JavaElementInfo info) {
+        return info.getLabel() != null && info.getFileName() != null;
+    }
+
+    static boolean hasPresentation(@NotNull XmlElementInfo info) {
+        return info.getLabel() != null && info.getFileName() != null;
+    }
+
+    @NotNull
+    static CachedElementTarget of(@NotNull Project project, @NotNull JavaElementInfo info) {
+        String elementType = info.getElementType();
+        String text = JavaService.TYPE_METHOD_CALL.equals(elementType) ? " line:" + info.getLineNumber() + " -> " + info.getLabel() : info.getLabel();
+        return new CachedElementTarget(project, info.getFilePath(), info.getStartOffset(), info.getEndOffset(), text, info.getFileName(), getJavaIcon(elementType), elementType, info.getSqlId());
+    }
+
+    @NotNull
+    static CachedElementTarget of(@NotNull Project project, @NotNull XmlElementInfo info) {
+        String databaseId = info.getDatabaseId();
+        String containerText = databaseId == null || databaseId.isEmpty() ? info.getFileName() : info.getFileName() + "," + databaseId;
+        return new CachedElementTarget(project, info.getFilePath(), info.getStartOffset(), info.getEndOffset(), info.getLabel(), containerText, AllIcons.Nodes.Tag);
+    }
+
+    @Nullable
+    private static Icon getJavaIcon(@NotNull String elementType) {
+        return switch (elementType) {
+            case JavaService.TYPE_CLASS -> AllIcons.Nodes.Class;
+            case JavaService.TYPE_INTERFACE_CLASS -> AllIcons.Nodes.Interface;
+            case JavaService.TYPE_METHOD, JavaService.TYPE_INTERFACE_METHOD, JavaService.TYPE_METHOD_CALL -> AllIcons.Nodes.Method;
+            case JavaService.TYPE_FIELD -> AllIcons.Nodes.Field;
+            default -> null;
+        };
+    }
+
+    /**
+     * 弹出列表中的元素文本
+     */
+    @NotNull
+    String getTargetText() {
+        return text;
+    }
+
+    /**
+     * 弹出列表中的容器文本
+     */
+    @NotNull
+    String getTargetContainerText() {
+        return containerText;
+    }
+
+    @Override
+    public PsiElement getParent() {
+        return null;
+    }
+
+    @Override
+    public PsiFile getContainingFile() {
+        return null;
+    }
+
+    @Override
+    public @NotNull Project getProject() {
+        return project;
+    }
+
+    @Override
+    public PsiManager getManager() {
+        return PsiManager.getInstance(project);
+    }
+
+    @Override
+    public boolean isValid() {
+        return !project.isDisposed();
+    }
+
+    @Override
+    public String getName() {
+        return text;
+    }
+
+    @Override
+    public @NotNull String getPresentableText() {
+        return text;
+    }
+
+    @Override
+    public @NotNull String getLocationString() {
+        return containerText;
+    }
+
+    @Override
+    public @Nullable Icon getIcon(boolean unused) {
+        return icon;
+    }
+
+    @Override
+    public @Nullable Icon getIcon(int flags) {
+        return icon;
+    }
+
+    @Override
+    public boolean canNavigate() {
+        return true;
+    }
+
+    @Override
+    public boolean canNavigateToSource() {
+        return true;
+    }
+
+    @Override
+    public void navigate(boolean requestFocus) {
+        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+        if (file == null || !file.isValid()) {
+            return;
+        }
+        if (startOffset < 0) {
+            // 没有偏移量：按名称查找元素，索引未就绪或未找到时打开文件
+            PsiElement element = elementType == null || sqlId == null || DumbService.isDumb(project) ? null : TagLocator.findJavaElementByName(project, filePath, elementType, sqlId);
+            if (element instanceof Navigatable navigatable && navigatable.canNavigate()) {
+                navigatable.navigate(requestFocus);
+            } else {
+                new OpenFileDescriptor(project, file).navigate(requestFocus);
+            }
+            return;
+        }
+        int offset = DocumentOffsetTracker.getInstance().translate(file, startOffset, endOffset).getStartOffset();
+        new OpenFileDescriptor(project, file, offset).navigate(requestFocus);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CachedElementTarget that = (CachedElementTarget) o;
+        return startOffset == that.startOffset && endOffset == that.endOffset && filePath.equals(that.filePath) && Objects.equals(sqlId, that.sqlId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filePath, startOffset, endOffset, sqlId);
+    }
+}
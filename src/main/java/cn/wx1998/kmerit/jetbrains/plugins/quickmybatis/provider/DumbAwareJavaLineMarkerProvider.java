@@ -0,0 +1,27 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.provider;
+
+import com.intellij.codeInsight.daemon.RelatedItemLineMarkerInfo;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 索引构建期间使用的 Java 行标记
+ * <p>
+ * {@link JavaLineMarkerProvider} 需要解析引用，索引未就绪时不会被调用；
+ * 这里只在索引未就绪时工作，完全依据上次会话持久化的缓存偏移量生成行标记，索引就绪后交还给 {@link JavaLineMarkerProvider}
+ */
+public class DumbAwareJavaLineMarkerProvider extends JavaLineMarkerProvider implements DumbAware {
+
+    @Override
+    public void collectNavigationMarkers(@NotNull List<? extends PsiElement> elements, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result, boolean forNavigation) {
+        if (elements.isEmpty() || !DumbService.isDumb(elements.get(0).getProject())) {
+            return;
+        }
+        collectNavigationMarkersInDumbMode(elements, result);
+    }
+}
@@ -0,0 +1,51 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.provider;
+
+import com.intellij.codeInsight.daemon.LineMarkerSettings;
+import com.intellij.codeInsight.daemon.RelatedItemLineMarkerInfo;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 索引构建期间使用的 XML 行标记
+ * <p>
+ * {@link XmlLineMarkerProvider} 只读取 XML 结构和持久化的缓存，不依赖索引；
+ * 这里只在索引未就绪时工作，索引就绪后交还给 {@link XmlLineMarkerProvider}，避免重复生成行标记
+ * <p>
+ * 不在 设置 → 行标记图标 中单独显示，使用 {@link XmlLineMarkerProvider} 的开关
+ */
+public class DumbAwareXmlLineMarkerProvider extends XmlLineMarkerProvider implements DumbAware {
+
+    @Override
+    public void collectNavigationMarkers(@NotNull List<? extends PsiElement> elements, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result, boolean forNavigation) {
+        if (elements.isEmpty() || !DumbService.isDumb(elements.get(0).getProject())) {
+            return;
+        }
+        // getId() 与 XmlLineMarkerProvider 一致，关闭 XmlLineMarkerProvider 的图标时这里也不生成
+        if (!LineMarkerSettings.getSettings().isEnabled(this)) {
+            return;
+        }
+        super.collectNavigationMarkers(elements, result, forNavigation);
+    }
+
+    /**
+     * 返回 null，设置中只显示 {@link XmlLineMarkerProvider} 的一项
+     */
+    @Override
+    public @Nullable("null means disabled") String getName() {
+        return null;
+    }
+
+    /**
+     * 与 {@link XmlLineMarkerProvider} 共用设置项
+     */
+    @Override
+    public @NotNull String getId() {
+        return XmlLineMarkerProvider.class.getName();
+    }
+}
@@ -1,9 +1,14 @@
 package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.provider;
 
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCache;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheActivation;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheFactory;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheSnapshot;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.JavaElementInfo;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.setting.MyPluginSettings;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.DocumentOffsetTracker;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.TagLocator;
 import com.intellij.codeInsight.daemon.RelatedItemLineMarkerInfo;
 import com.intellij.codeInsight.daemon.RelatedItemLineMarkerProvider;
@@ -11,8 +16,13 @@ import com.intellij.codeInsight.navigation.NavigationGutterIconBuilder;
 import com.intellij.codeInsight.navigation.impl.PsiTargetPresentationRenderer;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.markup.GutterIconRenderer;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.IconLoader;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.NotNullLazyValue;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiExpression;
@@ -23,6 +33,7 @@ import com.intellij.psi.PsiMethodCallExpression;
 import com.intellij.psi.PsiNameIdentifierOwner;
 import com.intellij.psi.PsiReferenceExpression;
 import com.intellij.psi.impl.source.xml.XmlTagImpl;
+import com.intellij.psi.util.CachedValue;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.CommonProcessors;
@@ -33,9 +44,15 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 import static cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.Icons.IMAGES_MAPPER_METHOD_SVG;
@@ -45,54 +62,290 @@ public class JavaLineMarkerProvider extends RelatedItemLineMarkerProvider {
     // 获取日志记录器实例
     private static final Logger LOG = Logger.getInstance(JavaLineMarkerProvider.class);
 
+    /**
+     * 文件级的计算结果缓存：元素 -> sqlId 及其 XML 元素（没有标记的元素记录为 {@link MarkerResult#NONE}）
+     * 类和方法的 sqlId 只取决于本文件
+     */
+    private static final Key<CachedValue<Map<PsiElement, MarkerResult>>> RESULT_CACHE_KEY = Key.create("quickmybatis.javaLineMarkerResults");
 
+    /**
+     * 字段和方法调用的计算结果缓存：sqlId 由表达式计算，可能引用其他文件中的常量，其他 Java 文件的结构修改后失效
+     */
+    private static final Key<CachedValue<Map<PsiElement, MarkerResult>>> RESOLVED_RESULT_CACHE_KEY = Key.create("quickmybatis.javaLineMarkerResolvedResults");
+
+    /**
+     * 按批次（同一文件的一组元素）计算行标记：先一次遍历收集所有候选 sqlId，再一次批量查询缓存，最后生成标记
+     */
     @Override
-    protected void collectNavigationMarkers(@NotNull PsiElement element, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result) {
-        Project project = element.getProject();
-        MyBatisCache cacheConfig = MyBatisCacheFactory.getRecommendedParser(project);
+    public void collectNavigationMarkers(@NotNull List<? extends PsiElement> elements, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result, boolean forNavigation) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        PsiFile containingFile = elements.get(0).getContainingFile();
+        if (containingFile == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Project project = containingFile.getProject();
+        // 缓存未激活（项目中未发现 MyBatis）时不访问缓存
+        if (!MyBatisCacheActivation.getInstance(project).isActive()) {
+            return;
+        }
         JavaService javaService = JavaService.getInstance(project);
+        MyBatisCache cacheConfig = MyBatisCacheFactory.getRecommendedParser(project);
+        // 非阻塞模式下只读内存快照，未命中时在延迟预算内等待后台加载
+        MyPluginSettings settings = MyPluginSettings.getInstance();
+        MyBatisCacheSnapshot snapshot = MyBatisCacheSnapshot.getForGutter(project);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getGutterLatencyBudgetMs());
+
+        // 1. 收集所有候选元素及其 sqlId，文件和相关映射都没有变化时直接复用上次的结果
+        Map<PsiElement, MarkerResult> cachedResults = LineMarkerResultCache.getResults(containingFile, RESULT_CACHE_KEY);
+        Map<PsiElement, MarkerResult> cachedResolvedResults = LineMarkerResultCache.getResolvedResults(containingFile, RESOLVED_RESULT_CACHE_KEY);
+        Map<PsiElement, String> sqlIdByElement = new LinkedHashMap<>();
+        Map<String, Set<XmlElementInfo>> xmlElementsBySqlId = new HashMap<>();
+        // 本次需要计算的元素（值为 null 表示没有标记）
+        Map<PsiElement, String> computedSqlIds = new LinkedHashMap<>();
+        // 缓存中记录的 SqlSession 调用位置，只有这些方法调用才需要 resolve，第一次遇到方法调用时才查询
+        Set<Integer> methodCallOffsets = null;
+        for (PsiElement element : elements) {
+            ProgressManager.checkCanceled();
+            MarkerResult cached = resultsFor(element, cachedResults, cachedResolvedResults).get(element);
+            if (cached != null) {
+                if (cached != MarkerResult.NONE) {
+                    sqlIdByElement.put(element, cached.sqlId());
+                    xmlElementsBySqlId.put(cached.sqlId(), cached.xmlElementInfos());
+                }
+                continue;
+            }
+            if (element instanceof PsiMethodCallExpression) {
+                if (methodCallOffsets == null) {
+                    methodCallOffsets = getMethodCallOffsets(containingFile, cacheConfig, snapshot, deadline);
+                }
+                if (!methodCallOffsets.contains(element.getTextRange().getStartOffset())) {
+                    computedSqlIds.put(element, null);
+                    continue;
+                }
+            }
+            String sqlId = getSqlId(element, javaService);
+            if (sqlId != null && !sqlId.isEmpty()) {
+                sqlIdByElement.put(element, sqlId);
+                computedSqlIds.put(element, sqlId);
+            } else {
+                computedSqlIds.put(element, null);
+            }
+        }
+
+        // 2. 一次批量查询本次计算出的 sqlId 对应的 XML 元素，并记入结果缓存
+        Set<String> sqlIds = new HashSet<>();
+        for (String sqlId : computedSqlIds.values()) {
+            if (sqlId != null && !xmlElementsBySqlId.containsKey(sqlId)) {
+                sqlIds.add(sqlId);
+            }
+        }
+        if (!sqlIds.isEmpty()) {
+            xmlElementsBySqlId.putAll(snapshot != null ? snapshot.getXmlElementsBySqlIds(containingFile, sqlIds, deadline) : cacheConfig.getXmlElementsBySqlIds(sqlIds));
+        }
+        for (Map.Entry<PsiElement, String> entry : computedSqlIds.entrySet()) {
+            String sqlId = entry.getValue();
+            resultsFor(entry.getKey(), cachedResults, cachedResolvedResults).put(entry.getKey(), sqlId == null ? MarkerResult.NONE : new MarkerResult(sqlId, xmlElementsBySqlId.getOrDefault(sqlId, Collections.emptySet())));
+        }
+        if (sqlIdByElement.isEmpty()) {
+            return;
+        }
+
+        // 3. 生成行标记
+        addMarkers(project, sqlIdByElement, xmlElementsBySqlId, result);
+        long elapsed = System.currentTimeMillis() - start;
+        LOG.debug(elapsed + "ms,collectNavigationMarkers:elements.size=" + elements.size() + ",sqlIds.size=" + sqlIdByElement.size() + ",computed.size=" + computedSqlIds.size());
+        if (elapsed > settings.getGutterLatencyBudgetMs()) {
+            MyBatisCacheSnapshot.getInstance(project).reportOverBudget("JavaLineMarkerProvider", containingFile, elapsed, settings.getGutterLatencyBudgetMs());
+        }
+    }
+
+    /**
+     * 索引未就绪时计算行标记：不解析任何引用，只按缓存中记录的元素范围匹配当前文件中的元素并读取其 sqlId；
+     * 没有记录偏移量的 Mapper 接口和接口方法按名称（全限定名、全限定名.方法名）匹配
+     */
+    protected void collectNavigationMarkersInDumbMode(@NotNull List<? extends PsiElement> elements, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result) {
+        PsiFile containingFile = elements.get(0).getContainingFile();
+        VirtualFile virtualFile = containingFile == null ? null : containingFile.getVirtualFile();
+        if (virtualFile == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Project project = containingFile.getProject();
+        // 缓存未激活（项目中未发现 MyBatis）时不访问缓存
+        if (!MyBatisCacheActivation.getInstance(project).isActive()) {
+            return;
+        }
+        MyBatisCache cacheConfig = MyBatisCacheFactory.getRecommendedParser(project);
+        MyPluginSettings settings = MyPluginSettings.getInstance();
+        MyBatisCacheSnapshot snapshot = MyBatisCacheSnapshot.getForGutter(project);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getGutterLatencyBudgetMs());
+
+        // 1. 读取该文件缓存的所有元素，按（平移到当前文档后的）范围建立索引
+        String filePath = virtualFile.getPath();
+        Set<JavaElementInfo> javaElementInfos = snapshot != null ? snapshot.getJavaElementsByFile(containingFile, filePath, deadline) : cacheConfig.getJavaElementsByFile(filePath);
+        if (javaElementInfos.isEmpty()) {
+            return;
+        }
+        DocumentOffsetTracker offsetTracker = DocumentOffsetTracker.getInstance();
+        Map<TextRange, String> sqlIdByRange = new HashMap<>();
+        Set<String> sqlIdsWithoutOffset = new HashSet<>();
+        for (JavaElementInfo info : javaElementInfos) {
+            if (!info.hasOffset()) {
+                sqlIdsWithoutOffset.add(info.getSqlId());
+                continue;
+            }
+            sqlIdByRange.putIfAbsent(offsetTracker.translate(virtualFile, info.getStartOffset(), info.getEndOffset()), info.getSqlId());
+        }
+
+        // 2. 候选元素的范围与缓存记录完全一致时才生成标记
+        Map<PsiElement, String> sqlIdByElement = new LinkedHashMap<>();
+        for (PsiElement element : elements) {
+            ProgressManager.checkCanceled();
+            String sqlId = null;
+            if (element instanceof PsiClass || element instanceof PsiMethod || element instanceof PsiField) {
+                sqlId = sqlIdByRange.get(element.getTextRange());
+                if (sqlId == null && !sqlIdsWithoutOffset.isEmpty()) {
+                    String interfaceSqlId = getInterfaceSqlId(element);
+                    sqlId = sqlIdsWithoutOffset.contains(interfaceSqlId) ? interfaceSqlId : null;
+                }
+            } else if (element instanceof PsiMethodCallExpression callExpression) {
+                // 方法调用的记录可能是整个调用表达式，也可能是方法引用表达式
+                sqlId = sqlIdByRange.get(callExpression.getTextRange());
+                if (sqlId == null) {
+                    sqlId = sqlIdByRange.get(callExpression.getMethodExpression().getTextRange());
+                }
+            }
+            if (sqlId != null && !sqlId.isEmpty()) {
+                sqlIdByElement.put(element, sqlId);
+            }
+        }
+        if (sqlIdByElement.isEmpty()) {
+            return;
+        }
+
+        // 3. 查询 XML 元素并生成行标记
+        Set<String> sqlIds = new HashSet<>(sqlIdByElement.values());
+        Map<String, Set<XmlElementInfo>> xmlElementsBySqlId = snapshot != null ? snapshot.getXmlElementsBySqlIds(containingFile, sqlIds, deadline) : cacheConfig.getXmlElementsBySqlIds(sqlIds);
+        addMarkers(project, sqlIdByElement, xmlElementsBySqlId, result);
+        LOG.debug((System.currentTimeMillis() - start) + "ms,collectNavigationMarkersInDumbMode:elements.size=" + elements.size() + ",sqlIds.size=" + sqlIdByElement.size());
+    }
+
+    /**
+     * 接口或接口方法按名称拼出的 sqlId（不解析引用，索引未就绪时也可以调用），其他元素返回 null
+     */
+    @Nullable
+    private static String getInterfaceSqlId(@NotNull PsiElement element) {
+        if (element instanceof PsiClass psiClass) {
+            return psiClass.isInterface() ? psiClass.getQualifiedName() : null;
+        }
+        if (element instanceof PsiMethod psiMethod) {
+            PsiClass containingClass = psiMethod.getContainingClass();
+            String qualifiedName = containingClass != null && containingClass.isInterface() ? containingClass.getQualifiedName() : null;
+            return qualifiedName != null ? qualifiedName + "." + psiMethod.getName() : null;
+        }
+        return null;
+    }
+
+    /**
+     * 根据元素的 sqlId 和查询到的 XML 元素信息生成行标记
+     */
+    private static void addMarkers(@NotNull Project project, @NotNull Map<PsiElement, String> sqlIdByElement, @NotNull Map<String, Set<XmlElementInfo>> xmlElementsBySqlId, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result) {
         ElementFilter filter = new ElementFilter() {
             @Override
-            protected Collection<? extends XmlTag> getResults(@NotNull PsiElement element) {
-                CommonProcessors.CollectProcessor<XmlTag> processor = new CommonProcessors.CollectProcessor<>();
-
-                String sqlId = null;
-                if (element instanceof PsiClass psiClass) {
-                    sqlId = psiClass.getQualifiedName();
-                } else if (element instanceof PsiMethod psiMethod) {
-                    PsiClass psiClass = psiMethod.getContainingClass();
-                    String qualifiedName = psiClass != null ? psiClass.getQualifiedName() : "";
-                    String methodName = psiMethod.getName();
-                    sqlId = qualifiedName + "." + methodName;
-                } else if (element instanceof PsiField psiField) {
-                    PsiExpression initializer = psiField.getInitializer();
-                    if (initializer != null) {
-                        sqlId = JavaService.parseExpression(initializer);
-                    }
-                } else if (element instanceof PsiMethodCallExpression psiMethodCallExpression) {
-                    PsiMethod method = psiMethodCallExpression.resolveMethod();
-                    if (method != null && javaService.isSqlSessionMethod(method)) {
-                        PsiExpression[] args = psiMethodCallExpression.getArgumentList().getExpressions();
-                        if (args.length != 0) {
-                            sqlId = JavaService.parseExpression(args[0]);
-                        }
+            protected boolean hasResults(@NotNull PsiElement element) {
+                Set<XmlElementInfo> xmlElementInfos = xmlElementsBySqlId.get(sqlIdByElement.get(element));
+                return xmlElementInfos != null && !xmlElementInfos.isEmpty();
+            }
+
+            @Override
+            protected Collection<? extends PsiElement> getResults(@NotNull PsiElement element) {
+                CommonProcessors.CollectProcessor<PsiElement> processor = new CommonProcessors.CollectProcessor<>();
+                Set<XmlElementInfo> xmlElementInfos = xmlElementsBySqlId.getOrDefault(sqlIdByElement.get(element), Collections.emptySet());
+                for (XmlElementInfo xmlElementInfo : xmlElementInfos) {
+                    // 缓存行带有展示信息时直接使用，不加载 XML 文件
+                    if (CachedElementTarget.hasPresentation(xmlElementInfo)) {
+                        processor.process(CachedElementTarget.of(project, xmlElementInfo));
+                        continue;
                     }
-                }
-                if (sqlId != null && !sqlId.isEmpty()) {
-                    Set<XmlElementInfo> xmlElementInfos = cacheConfig.getXmlElementsBySqlId(sqlId);
-                    for (XmlElementInfo xmlElementInfo : xmlElementInfos) {
-                        XmlTag xmlTagByInfo = TagLocator.findXmlTagByInfo(xmlElementInfo, project);
-                        if (xmlTagByInfo == null) {
-                            LOG.debug("xmlElementInfo 未找到： " + xmlElementInfo);
-                            continue;
-                        }
-                        processor.process(xmlTagByInfo);
+                    XmlTag xmlTagByInfo = TagLocator.findXmlTagByInfo(xmlElementInfo, project);
+                    if (xmlTagByInfo == null) {
+                        LOG.debug("xmlElementInfo 未找到： " + xmlElementInfo);
+                        continue;
                     }
+                    processor.process(xmlTagByInfo);
                 }
                 return processor.getResults();
             }
         };
-        filter.collectNavigationMarkers(element, result);
+        for (PsiElement element : sqlIdByElement.keySet()) {
+            filter.collectNavigationMarkers(element, result);
+        }
+    }
+
+    /**
+     * 获取文件中缓存的 SqlSession 方法调用的起始偏移量（已按未保存的编辑平移到当前文档中的位置）
+     */
+    @NotNull
+    private static Set<Integer> getMethodCallOffsets(@NotNull PsiFile file, @NotNull MyBatisCache cacheConfig, @Nullable MyBatisCacheSnapshot snapshot, long deadline) {
+        VirtualFile virtualFile = file.getVirtualFile();
+        if (virtualFile == null) {
+            return Collections.emptySet();
+        }
+        Set<Integer> cachedOffsets = snapshot != null ? snapshot.getMethodCallOffsets(file, virtualFile.getPath(), deadline) : cacheConfig.getJavaElementOffsetsByFile(virtualFile.getPath(), JavaService.TYPE_METHOD_CALL);
+        DocumentOffsetTracker offsetTracker = DocumentOffsetTracker.getInstance();
+        Set<Integer> offsets = new HashSet<>(cachedOffsets.size());
+        for (Integer offset : cachedOffsets) {
+            offsets.add(offsetTracker.translateOffset(virtualFile, offset));
+        }
+        return offsets;
+    }
+
+    /**
+     * 计算元素对应的 sqlId，不是候选元素时返回 null
+     */
+    @Nullable
+    private static String getSqlId(@NotNull PsiElement element, @NotNull JavaService javaService) {
+        if (element instanceof PsiClass psiClass) {
+            return psiClass.getQualifiedName();
+        } else if (element instanceof PsiMethod psiMethod) {
+            PsiClass psiClass = psiMethod.getContainingClass();
+            String qualifiedName = psiClass != null ? psiClass.getQualifiedName() : "";
+            String methodName = psiMethod.getName();
+            return qualifiedName + "." + methodName;
+        } else if (element instanceof PsiField psiField) {
+            PsiExpression initializer = psiField.getInitializer();
+            if (initializer != null) {
+                return JavaService.parseExpression(initializer);
+            }
+        } else if (element instanceof PsiMethodCallExpression psiMethodCallExpression) {
+            PsiMethod method = psiMethodCallExpression.resolveMethod();
+            if (method != null && javaService.isSqlSessionMethod(method)) {
+                PsiExpression[] args = psiMethodCallExpression.getArgumentList().getExpressions();
+                if (args.length != 0) {
+                    return JavaService.parseExpression(args[0]);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 元素计算结果所在的缓存：字段和方法调用的 sqlId 可能引用其他文件中的常量
+     */
+    @NotNull
+    private static Map<PsiElement, MarkerResult> resultsFor(@NotNull PsiElement element, @NotNull Map<PsiElement, MarkerResult> cachedResults, @NotNull Map<PsiElement, MarkerResult> cachedResolvedResults) {
+        return element instanceof PsiField || element instanceof PsiMethodCallExpression ? cachedResolvedResults : cachedResults;
+    }
+
+    /**
+     * 单个元素的计算结果
+     */
+    private record MarkerResult(String sqlId, Set<XmlElementInfo> xmlElementInfos) {
+
+        private static final MarkerResult NONE = new MarkerResult(null, Collections.emptySet());
     }
 }
 
@@ -112,15 +365,16 @@ abstract class ElementFilter {
         return targetMarkerInfo;
     }
 
-    // 获取结果集的抽象方法，子类需要实现该方法以返回具体的 DOM 元素集合
-    protected abstract Collection<? extends XmlTag> getResults(@NotNull PsiElement element);
+    // 判断元素是否有关联结果的抽象方法，只能使用缓存中的信息，不能定位目标 PSI
+    protected abstract boolean hasResults(@NotNull PsiElement element);
+
+    // 获取结果集的抽象方法，子类需要实现该方法以返回具体的 DOM 元素或缓存目标集合（在打开弹窗或跳转时才会调用）
+    protected abstract Collection<? extends PsiElement> getResults(@NotNull PsiElement element);
 
     // 收集导航标记的方法，用于为目标元素生成导航标记
     public void collectNavigationMarkers(@NotNull PsiElement element, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result) {
-        // 调用 getResults 方法获取与当前元素相关的 DOM 元素集合
-        final Collection<? extends XmlTag> results = getResults(element);
-        // 如果结果集不为空，则继续处理
-        if (!results.isEmpty()) {
+        // 只根据缓存信息判断是否需要生成标记
+        if (hasResults(element)) {
             // 获取目标标记信息的标识符
             PsiElement targetMarkerInfo = null;
             if (element instanceof PsiNameIdentifierOwner) {
@@ -135,13 +389,13 @@ abstract class ElementFilter {
             // 修改后的工具提示生成逻辑
             String tooltipText = buildTooltipText(element, targetMarkerInfo);
 
-            // 将 DOM 元素转换为对应的 XML 标签列表
-            final List<XmlTag> xmlTags = new ArrayList<>(results);
             // 创建导航标记构建器，设置图标、对齐方式、目标对象以及工具提示信息
+            // 目标 XML 标签延迟到打开弹窗或跳转时才定位，计算行标记时不加载 XML 文件
             NavigationGutterIconBuilder<PsiElement> builder =
                     NavigationGutterIconBuilder.create(IconLoader.getIcon(IMAGES_MAPPER_METHOD_SVG, this.getClass()))
                             .setAlignment(GutterIconRenderer.Alignment.CENTER)
-                            .setTargets(xmlTags)
+                            .setTargets(NotNullLazyValue.<Collection<? extends PsiElement>>lazy(() -> new ArrayList<>(getResults(element))))
+                            .setEmptyPopupText("未找到对应的 XML 元素")
                             .setTargetRenderer(getRenderer())
                             .setTooltipTitle(tooltipText);
 
@@ -159,6 +413,9 @@ abstract class ElementFilter {
             @NotNull
             @Override
             public String getElementText(@NotNull PsiElement element) {
+                if (element instanceof CachedElementTarget target) {
+                    return target.getTargetText();
+                }
                 XmlTag xmlTag = (XmlTag) element;
                 XmlAttribute attr = xmlTag.getAttribute("id", XmlUtil.XML_SCHEMA_URI);
                 attr = attr == null ? xmlTag.getAttribute("id") : attr;
@@ -175,6 +432,9 @@ abstract class ElementFilter {
             @NotNull
             @Override
             public String getContainerText(@NotNull PsiElement element) {
+                if (element instanceof CachedElementTarget target) {
+                    return target.getTargetContainerText();
+                }
                 XmlTagImpl xmlTag = (XmlTagImpl) element;
                 final PsiFile file = element.getContainingFile();
                 String databaseId = getDatabaseId(xmlTag);
@@ -0,0 +1,69 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.provider;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheManager;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheManagerFactory;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheSnapshot;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 行标记计算结果的文件级缓存
+ * <p>
+ * 以文件的修改时间戳、文件的缓存代数（{@link MyBatisCacheManager#getFileGeneration(String)}）
+ * 和内存快照的修改次数为依赖，三者都不变时，重复的代码分析直接复用每个元素上次的计算结果；
+ * 计算时解析了其他文件中的常量的结果还需要依赖 Java 结构修改计数（{@link #getResolvedResults}），
+ * 其他文件中的常量被修改后重新计算
+ */
+final class LineMarkerResultCache {
+
+    private LineMarkerResultCache() {
+    }
+
+    /**
+     * 获取文件当前有效的结果表（元素 -> 计算结果），依赖变化后返回新的空表
+     */
+    @NotNull
+    static <V> Map<PsiElement, V> getResults(@NotNull PsiFile file, @NotNull Key<CachedValue<Map<PsiElement, V>>> key) {
+        return getResults(file, key, false);
+    }
+
+    /**
+     * 获取文件当前有效的结果表，用于计算时会解析其他文件（字段初始值、方法调用参数中引用的常量）的结果，
+     * 任意 Java 文件的结构（方法体之外的代码，包括常量的初始值）修改后同样返回新的空表
+     */
+    @NotNull
+    static <V> Map<PsiElement, V> getResolvedResults(@NotNull PsiFile file, @NotNull Key<CachedValue<Map<PsiElement, V>>> key) {
+        return getResults(file, key, true);
+    }
+
+    @NotNull
+    private static <V> Map<PsiElement, V> getResults(@NotNull PsiFile file, @NotNull Key<CachedValue<Map<PsiElement, V>>> key, boolean dependsOnOtherFiles) {
+        return CachedValuesManager.getCachedValue(file, key, () -> {
+            Project project = file.getProject();
+            VirtualFile virtualFile = file.getVirtualFile();
+            String filePath = virtualFile != null ? virtualFile.getPath() : "";
+            MyBatisCacheManager cacheManager = MyBatisCacheManagerFactory.getRecommendedParser(project);
+            ModificationTracker fileGeneration = () -> cacheManager.getFileGeneration(filePath);
+            ModificationTracker snapshotModification = MyBatisCacheSnapshot.getInstance(project).getModificationTracker();
+            Map<PsiElement, V> results = new ConcurrentHashMap<>();
+            if (dependsOnOtherFiles) {
+                ModificationTracker javaStructureModification = PsiModificationTracker.getInstance(project).forLanguage(JavaLanguage.INSTANCE);
+                return CachedValueProvider.Result.create(results, file, fileGeneration, snapshotModification, javaStructureModification);
+            }
+            return CachedValueProvider.Result.create(results, file, fileGeneration, snapshotModification);
+        });
+    }
+}
@@ -1,10 +1,13 @@
 package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.provider;
 
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCache;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheActivation;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheFactory;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheSnapshot;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.JavaElementInfo;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.MyBatisXmlStructure;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.setting.MyPluginSettings;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.DomUtils;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.TagLocator;
 import com.intellij.codeInsight.daemon.RelatedItemLineMarkerInfo;
@@ -13,8 +16,12 @@ import com.intellij.codeInsight.navigation.NavigationGutterIconBuilder;
 import com.intellij.codeInsight.navigation.impl.PsiTargetPresentationRenderer;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.IconLoader;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.NotNullLazyValue;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiDocumentManager;
@@ -26,6 +33,7 @@ import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiMethodCallExpression;
 import com.intellij.psi.PsiParameter;
 import com.intellij.psi.PsiWhiteSpace;
+import com.intellij.psi.util.CachedValue;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
@@ -38,9 +46,13 @@ import javax.swing.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -69,38 +81,131 @@ public class XmlLineMarkerProvider extends RelatedItemLineMarkerProvider {
      * 这些包括 select、insert、update 和 delete 语句。
      */
     private static final Set<String> TARGET_TYPES = Set.of(MyBatisXmlStructure.SELECT_TAG, MyBatisXmlStructure.INSERT_TAG, MyBatisXmlStructure.UPDATE_TAG, MyBatisXmlStructure.DELETE_TAG);
-    MyBatisCache myBatisCache;
 
+    /**
+     * 文件级的计算结果缓存：标签名 token -> 关联的 Java 元素（没有标记时为空集合）
+     */
+    private static final Key<CachedValue<Map<PsiElement, Set<JavaElementInfo>>>> RESULT_CACHE_KEY = Key.create("quickmybatis.xmlLineMarkerResults");
+
+    /**
+     * 按批次（同一文件的一组元素）计算行标记：先一次遍历收集所有 statement 的 sqlId，再一次批量查询缓存，最后生成标记
+     */
     @Override
-    protected void collectNavigationMarkers(@NotNull PsiElement element, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result) {
-        // 如果当前元素不是目标元素，则直接返回
-        if (!isTheElement(element)) {
+    public void collectNavigationMarkers(@NotNull List<? extends PsiElement> elements, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result, boolean forNavigation) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        // 同一批元素属于同一个文件，文件级的判断只做一次
+        PsiFile containingFile = elements.get(0).getContainingFile();
+        if (!(containingFile instanceof XmlFile xmlFile) || !DomUtils.isMybatisFile(containingFile)) {
             return;
         }
-        myBatisCache = MyBatisCacheFactory.getRecommendedParser(element.getProject());
-
-        // 应用处理逻辑并生成导航标记
-        Optional<? extends PsiElement[]> processResult = apply((XmlToken) element);
-        if (processResult.isPresent()) {
-            PsiElement[] arrays = processResult.get();
-            NavigationGutterIconBuilder<PsiElement> navigationGutterIconBuilder = NavigationGutterIconBuilder.create(getIcon());
-            if (arrays.length > 0) {
-                navigationGutterIconBuilder.setTooltipTitle(getTooltip(arrays[0], element));
+        long start = System.currentTimeMillis();
+        Project project = containingFile.getProject();
+        // 打开了 Mapper XML，缓存未激活时在后台激活，激活完成后重新分析
+        MyBatisCacheActivation activation = MyBatisCacheActivation.getInstance(project);
+        if (!activation.isActive()) {
+            activation.activate("打开了 Mapper XML: " + containingFile.getName());
+            return;
+        }
+        MyBatisCache myBatisCache = MyBatisCacheFactory.getRecommendedParser(project);
+        // 非阻塞模式下只读内存快照，未命中时在延迟预算内等待后台加载
+        MyPluginSettings settings = MyPluginSettings.getInstance();
+        MyBatisCacheSnapshot snapshot = MyBatisCacheSnapshot.getForGutter(project);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getGutterLatencyBudgetMs());
+
+        // 1. 收集 mapper 标签和所有 statement 标签的 sqlId，文件和相关映射都没有变化时直接复用上次的结果
+        Map<PsiElement, Set<JavaElementInfo>> cachedResults = LineMarkerResultCache.getResults(xmlFile, RESULT_CACHE_KEY);
+        Map<XmlToken, Set<JavaElementInfo>> markerTargets = new LinkedHashMap<>();
+        Map<XmlToken, XmlTag> mapperTokens = new LinkedHashMap<>();
+        Map<XmlToken, String> statementSqlIds = new LinkedHashMap<>();
+        for (PsiElement element : elements) {
+            ProgressManager.checkCanceled();
+            if (!(element instanceof XmlToken token) || !isTargetType(token)) {
+                continue;
+            }
+            Set<JavaElementInfo> cached = cachedResults.get(token);
+            if (cached != null) {
+                markerTargets.put(token, cached);
+                continue;
+            }
+            XmlTag currentTag = PsiTreeUtil.getParentOfType(token, XmlTag.class);
+            if (currentTag == null) {
+                LOG.debug("Could not find parent XmlTag for element: " + token.getText());
+                continue;
+            }
+            String tagName = currentTag.getName().toLowerCase();
+            String sqlId = null;
+            if (MAPPER_TAG.equalsIgnoreCase(tagName)) {
+                mapperTokens.put(token, currentTag);
+                continue;
+            } else if (isStatementTag(tagName)) {
+                sqlId = getStatementSqlId(xmlFile, currentTag);
+            }
+            if (sqlId != null) {
+                statementSqlIds.put(token, sqlId);
+            } else {
+                cachedResults.put(token, Collections.emptySet());
+            }
+        }
+
+        // 2. 一次批量查询所有 statement 对应的 Java 元素
+        Set<String> sqlIds = new HashSet<>(statementSqlIds.values());
+        Map<String, Set<JavaElementInfo>> javaElementsBySqlId;
+        if (sqlIds.isEmpty()) {
+            javaElementsBySqlId = Collections.emptyMap();
+        } else {
+            javaElementsBySqlId = snapshot != null ? snapshot.getJavaElementsBySqlIds(xmlFile, sqlIds, deadline) : myBatisCache.getJavaElementsBySqlIds(sqlIds);
+        }
+
+        // 3. 记入结果缓存并生成行标记
+        mapperTokens.forEach((token, mapperTag) -> {
+            Set<JavaElementInfo> javaElementInfos = findMapperElementInfos(myBatisCache, snapshot, deadline, mapperTag);
+            cachedResults.put(token, javaElementInfos);
+            markerTargets.put(token, javaElementInfos);
+        });
+        statementSqlIds.forEach((token, sqlId) -> {
+            Set<JavaElementInfo> javaElementInfos = javaElementsBySqlId.getOrDefault(sqlId, Collections.emptySet());
+            if (javaElementInfos.isEmpty()) {
+                LOG.debug("No JavaElementInfo found for sqlId: " + sqlId);
+            }
+            cachedResults.put(token, javaElementInfos);
+            markerTargets.put(token, javaElementInfos);
+        });
+        markerTargets.forEach((token, javaElementInfos) -> {
+            if (!javaElementInfos.isEmpty()) {
+                addMarker(token, javaElementInfos, project, result);
             }
-            navigationGutterIconBuilder.setTargets(arrays);
-            navigationGutterIconBuilder.setTargetRenderer(getRender());
-            RelatedItemLineMarkerInfo<PsiElement> lineMarkerInfo = navigationGutterIconBuilder.createLineMarkerInfo(element);
-            result.add(lineMarkerInfo);
+        });
+        long elapsed = System.currentTimeMillis() - start;
+        LOG.debug(elapsed + "ms,collectNavigationMarkers:elements.size=" + elements.size() + ",sqlIds.size=" + statementSqlIds.size() + ",cached.size=" + (markerTargets.size() - mapperTokens.size() - statementSqlIds.size()));
+        if (elapsed > settings.getGutterLatencyBudgetMs()) {
+            MyBatisCacheSnapshot.getInstance(project).reportOverBudget("XmlLineMarkerProvider", xmlFile, elapsed, settings.getGutterLatencyBudgetMs());
         }
     }
 
+    /**
+     * 只根据缓存的元数据生成行标记，目标 PSI 在打开弹窗或跳转时才定位，计算行标记时不加载目标文件
+     */
+    private void addMarker(@NotNull XmlToken element, @NotNull Set<JavaElementInfo> javaElementInfos, @NotNull Project project, @NotNull Collection<? super RelatedItemLineMarkerInfo<?>> result) {
+        NavigationGutterIconBuilder<PsiElement> navigationGutterIconBuilder = NavigationGutterIconBuilder.create(getIcon());
+        navigationGutterIconBuilder.setTooltipTitle(getTooltip(javaElementInfos));
+        navigationGutterIconBuilder.setTargets(NotNullLazyValue.lazy(() -> locateJavaElements(javaElementInfos, project)));
+        navigationGutterIconBuilder.setEmptyPopupText("未找到对应的 Java 元素");
+        navigationGutterIconBuilder.setTargetRenderer(getRender());
+        RelatedItemLineMarkerInfo<PsiElement> lineMarkerInfo = navigationGutterIconBuilder.createLineMarkerInfo(element);
+        result.add(lineMarkerInfo);
+    }
+
     private @NotNull Supplier<? extends PsiTargetPresentationRenderer<PsiElement>> getRender() {
         return () -> new PsiTargetPresentationRenderer<>() {
             @Nls
             @NotNull
             @Override
             public String getElementText(@NotNull PsiElement element) {
-                if (element instanceof PsiClass psiClass) {
+                if (element instanceof CachedElementTarget target) {
+                    return target.getTargetText();
+                } else if (element instanceof PsiClass psiClass) {
                     // 处理Java类（接口）
                     return psiClass.getName() != null ? psiClass.getName() : "未知类";
                 } else if (element instanceof PsiMethod psiMethod) {
@@ -129,7 +234,8 @@ public class XmlLineMarkerProvider extends RelatedItemLineMarkerProvider {
                             lineNumber = document.getLineNumber(startOffset) + 1;
                         }
                     }
-                    String firstParamValue = JavaService.parseExpression(validMethodCallFromSqlSessionIdentifier);
+                    // 索引未就绪时无法解析参数中的常量，直接展示原始代码
+                    String firstParamValue = project != null && DumbService.isDumb(project) ? null : JavaService.parseExpression(validMethodCallFromSqlSessionIdentifier);
                     String methodName = validMethodCallFromSqlSessionIdentifier.getMethodExpression().getReferenceName();
                     String originalText = validMethodCallFromSqlSessionIdentifier.getText();
                     String finalText = firstParamValue != null ? JavaService.replaceFirstParam(originalText, methodName, firstParamValue) : originalText;
@@ -148,128 +254,79 @@ public class XmlLineMarkerProvider extends RelatedItemLineMarkerProvider {
             @NotNull
             @Override
             public String getContainerText(@NotNull PsiElement element) {
+                if (element instanceof CachedElementTarget target) {
+                    return target.getTargetContainerText();
+                }
                 return element.getContainingFile().getVirtualFile().getName();
             }
         };
     }
 
     /**
-     * 确定给定的 PsiElement 是否为目标 MyBatis XML 元素。
-     * 目标元素必须是 XmlToken，属于支持的类型（例如 select、insert 等），
-     * 并且位于有效的 MyBatis XML 文件中。
-     *
-     * @param element 要检查的 PsiElement
-     * @return 如果元素是目标 MyBatis XML 元素，则为 true；否则为 false
+     * 查找 mapper 根标签对应的 Java 接口/类的缓存信息（基于namespace关联的JavaElementInfo）
      */
-    public boolean isTheElement(@NotNull PsiElement element) {
-        LOG.debug("Checking if element is target type: " + element.getClass().getSimpleName());
-        boolean flag1 = element instanceof XmlToken;
-        boolean flag2 = false;
-        if (element instanceof XmlToken xmlToken) {
-            flag2 = isTargetType(xmlToken);
+    @NotNull
+    private Set<JavaElementInfo> findMapperElementInfos(@NotNull MyBatisCache myBatisCache, @Nullable MyBatisCacheSnapshot snapshot, long deadline, @NotNull XmlTag mapperTag) {
+        String namespace = mapperTag.getAttributeValue("namespace");
+        if (StringUtil.isEmpty(namespace)) {
+            LOG.debug("Mapper tag missing namespace attribute");
+            return Collections.emptySet();
+        }
+
+        // 从缓存获取namespace对应的Java元素信息
+        Set<JavaElementInfo> javaElementInfos = snapshot != null ? snapshot.getJavaElementsByNamespace(mapperTag.getContainingFile(), namespace, deadline) : myBatisCache.getJavaElementsByNamespace(namespace);
+        if (javaElementInfos.isEmpty()) {
+            LOG.debug("No JavaElementInfo found for namespace: " + namespace);
+            return Collections.emptySet();
         }
-        boolean flag3 = DomUtils.isMybatisFile(element.getContainingFile());
-        return flag1 && flag2 && flag3;
+        return javaElementInfos;
     }
 
     /**
-     * 应用查找给定 MyBatis XML 元素对应的 Java 方法或类的逻辑。
-     * 使用直接XML解析获取namespace和statement ID，通过缓存的JavaElementInfo+偏移量定位目标元素。
-     *
-     * @param from 表示 MyBatis XML 元素的源 XmlToken
-     * @return 如果找到，则包含 PsiElements（Java 方法或类）数组的 Optional；否则为空 Optional
+     * 拼接 statement 标签的完整 SQL ID（namespace + "." + id），缺少 id 或 namespace 时返回 null
      */
-    public Optional<? extends PsiElement[]> apply(@NotNull XmlToken from) {
-        LOG.debug("Applying XmlLineMarkerProvider for element: " + from.getText());
-
-        // 1. 校验包含文件是否为XML文件
-        PsiElement containingFile = from.getContainingFile();
-        if (!(containingFile instanceof XmlFile xmlFile)) {
-            LOG.debug("Containing file is not an XmlFile");
-            return Optional.empty();
+    @Nullable
+    private String getStatementSqlId(@NotNull XmlFile xmlFile, @NotNull XmlTag statementTag) {
+        String id = statementTag.getAttributeValue("id");
+        if (StringUtil.isEmpty(id)) {
+            LOG.debug("Statement tag missing id attribute");
+            return null;
         }
 
-        // 2. 向上查找当前元素对应的XmlTag（确保定位到statement/mapper标签）
-        PsiElement parent = from.getParent();
-        while (parent != null && !(parent instanceof XmlTag)) {
-            parent = parent.getParent();
+        // 获取根mapper标签的namespace，拼接完整SQL ID
+        XmlTag rootTag = xmlFile.getDocument() != null ? xmlFile.getDocument().getRootTag() : null;
+        if (rootTag == null) {
+            LOG.debug("Could not find root mapper tag in XML file");
+            return null;
         }
-        if (parent == null) {
-            LOG.debug("Could not find parent XmlTag for element: " + from.getText());
-            return Optional.empty();
+        String namespace = rootTag.getAttributeValue("namespace");
+        if (StringUtil.isEmpty(namespace)) {
+            LOG.debug("Root mapper tag missing namespace attribute");
+            return null;
         }
-        XmlTag currentTag = (XmlTag) parent;
-        String tagName = currentTag.getName().toLowerCase();
-        Project project = from.getProject();
-
-        // 3. 处理mapper根标签：查找对应的Java接口/类（基于namespace关联的JavaElementInfo）
-        if (MAPPER_TAG.equalsIgnoreCase(tagName)) {
-            String namespace = currentTag.getAttributeValue("namespace");
-            if (StringUtil.isEmpty(namespace)) {
-                LOG.debug("Mapper tag missing namespace attribute");
-                return Optional.empty();
-            }
-
-            // 从缓存获取namespace对应的Java元素信息
-            Set<JavaElementInfo> javaElementInfos = myBatisCache.getSqlIdToJavaElements().get(namespace);
-            if (javaElementInfos == null || javaElementInfos.isEmpty()) {
-                LOG.debug("No JavaElementInfo found for namespace: " + namespace);
-                return Optional.empty();
-            }
-
-            // 遍历JavaElementInfo，通过TagLocator定位具体的PsiClass
-            List<PsiElement> targetClasses = new ArrayList<>();
-            for (JavaElementInfo info : javaElementInfos) {
-                PsiElement javaElement = TagLocator.findJavaTagByInfo(info, project);
-                targetClasses.add(javaElement);
-            }
-
-            // 转换为PsiClass数组返回（保持原有返回类型兼容）
-            return Optional.of(targetClasses.toArray(new PsiElement[0]));
-        }
-
-        // 4. 处理statement标签（select/insert/update/delete）：查找对应的Java方法
-        else if (isStatementTag(tagName)) {
-            String id = currentTag.getAttributeValue("id");
-            if (StringUtil.isEmpty(id)) {
-                LOG.debug("Statement tag missing id attribute");
-                return Optional.empty();
-            }
-
-            // 获取根mapper标签的namespace，拼接完整SQL ID
-            XmlTag rootTag = xmlFile.getDocument() != null ? xmlFile.getDocument().getRootTag() : null;
-            if (rootTag == null) {
-                LOG.debug("Could not find root mapper tag in XML file");
-                return Optional.empty();
-            }
-            String namespace = rootTag.getAttributeValue("namespace");
-            if (StringUtil.isEmpty(namespace)) {
-                LOG.debug("Root mapper tag missing namespace attribute");
-                return Optional.empty();
-            }
-            String fullSqlId = namespace + "." + id;
+        return namespace + "." + id;
+    }
 
-            // 从缓存获取SQL ID对应的Java元素信息
-            Set<JavaElementInfo> javaElementInfos = myBatisCache.getJavaElementsBySqlId(fullSqlId);
-            if (javaElementInfos.isEmpty()) {
-                LOG.debug("No JavaElementInfo found for sqlId: " + fullSqlId);
-                return Optional.empty();
+    /**
+     * 通过TagLocator把缓存的JavaElementInfo定位为具体的PSI元素
+     */
+    @NotNull
+    private List<PsiElement> locateJavaElements(@NotNull Set<JavaElementInfo> javaElementInfos, @NotNull Project project) {
+        List<PsiElement> targets = new ArrayList<>();
+        for (JavaElementInfo info : javaElementInfos) {
+            // 缓存行带有展示信息时直接使用，不加载 Java 文件
+            if (CachedElementTarget.hasPresentation(info)) {
+                targets.add(CachedElementTarget.of(project, info));
+                continue;
             }
-
-            // 遍历JavaElementInfo，通过TagLocator定位具体的PsiMethod
-            List<PsiElement> targetMethods = new ArrayList<>();
-            for (JavaElementInfo info : javaElementInfos) {
-                PsiElement javaElement = TagLocator.findJavaTagByInfo(info, project);
-                targetMethods.add(javaElement);
+            PsiElement javaElement = TagLocator.findJavaTagByInfo(info, project);
+            if (javaElement == null) {
+                LOG.debug("javaElementInfo 未找到： " + info);
+                continue;
             }
-
-            // 转换为PsiMethod数组返回（保持原有返回类型兼容）
-            return Optional.of(targetMethods.toArray(new PsiElement[0]));
+            targets.add(javaElement);
         }
-
-        // 5. 非目标标签类型，返回空
-        LOG.debug("Element is not a target tag type (mapper/select/insert/update/delete): " + tagName);
-        return Optional.empty();
+        return targets;
     }
 
     /**
@@ -351,27 +408,22 @@ public class XmlLineMarkerProvider extends RelatedItemLineMarkerProvider {
 
     /**
      * Generate line marker tooltip when hovering over marker elements.
-     * The tooltip provides information about the corresponding Java method or class.
-     * If no specific method or class is found, fallback to showing text from the containing file.
+     * The tooltip is built from the cached element info only, so the Java file is not loaded.
+     * Interface methods are shown as class#method, everything else by its sql id.
      *
-     * @param element Source PsiElement (e.g., MyBatis XML element)
-     * @param target  Target PsiElement (e.g., Java method or class)
+     * @param javaElementInfos Cached Java elements linked to the MyBatis XML element
      * @return Tooltip text
      */
     @NotNull
-    public String getTooltip(PsiElement element, @NotNull PsiElement target) {
-        String text = null;
-        if (element instanceof PsiMethod psiMethod) {
-            PsiClass containingClass = psiMethod.getContainingClass();
-            if (containingClass != null) {
-                text = containingClass.getQualifiedName() + "#" + psiMethod.getName();
-            }
-        }
-        if (text == null && element instanceof PsiClass psiClass) {
-            text = psiClass.getQualifiedName();
+    public String getTooltip(@NotNull Set<JavaElementInfo> javaElementInfos) {
+        JavaElementInfo info = javaElementInfos.stream().sorted().findFirst().orElse(null);
+        if (info == null || info.getSqlId() == null) {
+            return "找到源码";
         }
-        if (text == null) {
-            text = target.getContainingFile().getText();
+        String text = info.getSqlId();
+        int lastDot = text.lastIndexOf('.');
+        if (JavaService.TYPE_INTERFACE_METHOD.equals(info.getElementType()) && lastDot > 0) {
+            text = text.substring(0, lastDot) + "#" + text.substring(lastDot + 1);
         }
         return "找到源码 -> " + text;
     }
@@ -6,10 +6,13 @@ import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.ProjectFileUtils;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiBinaryExpression;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiClassObjectAccessExpression;
+import com.intellij.psi.PsiConstantEvaluationHelper;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiExpression;
 import com.intellij.psi.PsiField;
@@ -23,7 +26,12 @@ import com.intellij.psi.PsiModifier;
 import com.intellij.psi.PsiPolyadicExpression;
 import com.intellij.psi.PsiReferenceExpression;
 import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiVariable;
 import com.intellij.psi.impl.source.PsiClassReferenceType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.ui.classFilter.ClassFilter;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -53,6 +61,8 @@ public class JavaService implements Serializable {
     public static final String TYPE_METHOD_CALL = "methodCall";
     // 获取日志记录器实例
     private static final Logger LOG = Logger.getInstance(JavaService.class);
+    // 变量值缓存键
+    private static final Key<CachedValue<String>> VARIABLE_VALUE_KEY = Key.create("km.quick.mybatis.variable.value");
     @Serial
     private static final long serialVersionUID = 1L;
     private final Project project;
@@ -85,75 +95,96 @@ public class JavaService implements Serializable {
      * @return 表达式的值
      */
     public static String parseExpression(PsiExpression expression) {
-        return ReadAction.compute(() -> {
-            if (expression instanceof PsiLiteralExpression) {
-                // 直接返回字面量值
-                return String.valueOf(((PsiLiteralExpression) expression).getValue());
-            } else if (expression instanceof PsiBinaryExpression) {
-                // 处理二元表达式（如字符串拼接）
-                Deque<String> parts = new ArrayDeque<>();
-                flattenBinaryExpression((PsiBinaryExpression) expression, parts);
-                return String.join("", parts);
-            } else if (expression instanceof PsiMethodCallExpression methodCall) {
-                PsiExpression[] arguments = methodCall.getArgumentList().getExpressions();
-                if (arguments.length != 0) {
-                    // 通常 SQL ID 是第一个字符串参数
-                    PsiExpression firstArg = arguments[0];
-                    if (firstArg instanceof PsiLiteralExpression) {
-                        Object value = ((PsiLiteralExpression) firstArg).getValue();
-                        return value instanceof String ? (String) value : null;
-                    } else if (firstArg instanceof PsiBinaryExpression) {
-                        return parseExpression(firstArg);
-                    } else if (firstArg instanceof PsiReferenceExpression) {
-                        return parseExpression(firstArg);
-                    }
+        return ReadAction.compute(() -> doParseExpression(expression));
+    }
+
+    /**
+     * 计算表达式的值（调用方需持有读锁）
+     */
+    private static String doParseExpression(PsiExpression expression) {
+        if (expression instanceof PsiLiteralExpression) {
+            // 直接返回字面量值
+            return String.valueOf(((PsiLiteralExpression) expression).getValue());
+        } else if (expression instanceof PsiBinaryExpression) {
+            // 处理二元表达式（如字符串拼接）
+            Deque<String> parts = new ArrayDeque<>();
+            flattenBinaryExpression((PsiBinaryExpression) expression, parts);
+            return String.join("", parts);
+        } else if (expression instanceof PsiMethodCallExpression methodCall) {
+            PsiExpression[] arguments = methodCall.getArgumentList().getExpressions();
+            if (arguments.length != 0) {
+                // 通常 SQL ID 是第一个字符串参数
+                PsiExpression firstArg = arguments[0];
+                if (firstArg instanceof PsiLiteralExpression) {
+                    Object value = ((PsiLiteralExpression) firstArg).getValue();
+                    return value instanceof String ? (String) value : null;
+                } else if (firstArg instanceof PsiBinaryExpression) {
+                    return doParseExpression(firstArg);
+                } else if (firstArg instanceof PsiReferenceExpression) {
+                    return doParseExpression(firstArg);
+                }
 
-                } else {
-                    // 处理方法调用表达式
-                    PsiReferenceExpression methodExpression = methodCall.getMethodExpression();
-                    String methodName = methodExpression.getReferenceName();
-                    if ("getName".equals(methodName)) {
-                        // 模拟 getName() 方法返回类名
-                        PsiExpression qualifier = methodExpression.getQualifierExpression();
-                        if (qualifier instanceof PsiClassObjectAccessExpression) {
-                            PsiType type = ((PsiClassObjectAccessExpression) qualifier).getOperand().getType();
-                            if (type instanceof PsiClassReferenceType) {
-                                PsiClass psiClass = ((PsiClassReferenceType) type).resolve();
-                                if (psiClass != null) {
-                                    return psiClass.getQualifiedName();
-                                }
+            } else {
+                // 处理方法调用表达式
+                PsiReferenceExpression methodExpression = methodCall.getMethodExpression();
+                String methodName = methodExpression.getReferenceName();
+                if ("getName".equals(methodName)) {
+                    // 模拟 getName() 方法返回类名
+                    PsiExpression qualifier = methodExpression.getQualifierExpression();
+                    if (qualifier instanceof PsiClassObjectAccessExpression) {
+                        PsiType type = ((PsiClassObjectAccessExpression) qualifier).getOperand().getType();
+                        if (type instanceof PsiClassReferenceType) {
+                            PsiClass psiClass = ((PsiClassReferenceType) type).resolve();
+                            if (psiClass != null) {
+                                return psiClass.getQualifiedName();
                             }
                         }
                     }
-
                 }
-            } else if (expression instanceof PsiReferenceExpression) {
-                // 处理变量引用
-                PsiElement resolved = ((PsiReferenceExpression) expression).resolve();
-                if (resolved instanceof PsiField field) {
-                    PsiExpression initializer = field.getInitializer();
-                    if (initializer != null) {
-                        return parseExpression(initializer);
-                    }
-                } else if (resolved instanceof PsiLocalVariable localVar) {
-                    PsiExpression initializer = localVar.getInitializer();
-                    if (initializer != null) {
-                        return parseExpression(initializer);
-                    }
-                    // 处理直接使用变量名作为字符串值的场景
-                    if (localVar.getType() instanceof PsiClassReferenceType && String.class.getName().equals(localVar.getType().getCanonicalText())) {
-                        return localVar.getName();
-                    }
-                }
-            } else if (expression instanceof PsiPolyadicExpression polyadicExpression) {
-                StringBuilder result = new StringBuilder();
-                for (PsiExpression operand : polyadicExpression.getOperands()) {
-                    result.append(parseExpression(operand));
-                }
-                return result.toString();
+
             }
-            return "";
-        });
+        } else if (expression instanceof PsiReferenceExpression) {
+            // 处理变量引用
+            PsiElement resolved = ((PsiReferenceExpression) expression).resolve();
+            if (resolved instanceof PsiField || resolved instanceof PsiLocalVariable) {
+                // 同一个常量（如 NAMESPACE）会被大量调用点引用，按变量缓存计算结果
+                return getVariableValue((PsiVariable) resolved);
+            }
+        } else if (expression instanceof PsiPolyadicExpression polyadicExpression) {
+            StringBuilder result = new StringBuilder();
+            for (PsiExpression operand : polyadicExpression.getOperands()) {
+                result.append(doParseExpression(operand));
+            }
+            return result.toString();
+        }
+        return "";
+    }
+
+    /**
+     * 获取字段或局部变量的值，结果缓存在变量上，PSI 发生修改后失效
+     */
+    private static String getVariableValue(@NotNull PsiVariable variable) {
+        return CachedValuesManager.getCachedValue(variable, VARIABLE_VALUE_KEY, () -> CachedValueProvider.Result.create(computeVariableValue(variable), PsiModificationTracker.getInstance(variable.getProject())));
+    }
+
+    /**
+     * 计算字段或局部变量的值：优先使用编译期常量求值，无法求值时（如 Xxx.class.getName()）再按表达式解析
+     */
+    private static String computeVariableValue(@NotNull PsiVariable variable) {
+        PsiExpression initializer = variable.getInitializer();
+        if (initializer != null) {
+            PsiConstantEvaluationHelper evaluationHelper = JavaPsiFacade.getInstance(variable.getProject()).getConstantEvaluationHelper();
+            Object constant = evaluationHelper.computeConstantExpression(initializer);
+            if (constant instanceof String value) {
+                return value;
+            }
+            return doParseExpression(initializer);
+        }
+        // 处理直接使用变量名作为字符串值的场景
+        if (variable instanceof PsiLocalVariable && variable.getType() instanceof PsiClassReferenceType && String.class.getName().equals(variable.getType().getCanonicalText())) {
+            return Objects.requireNonNull(variable.getName());
+        }
+        return "";
     }
 
     /**
@@ -181,7 +212,7 @@ public class JavaService implements Serializable {
             flattenBinaryExpression((PsiBinaryExpression) lOperand, parts);
         } else {
             // 解析非二元表达式的左操作数（如字面量、变量引用等），结果加入队列头部保证顺序
-            parts.addFirst(parseExpression(lOperand));
+            parts.addFirst(doParseExpression(lOperand));
         }
 
         // 递归处理右操作数：如果右操作数仍是二元表达式，继续拆解；否则解析为字符串并加入队列尾部
@@ -189,7 +220,7 @@ public class JavaService implements Serializable {
             flattenBinaryExpression((PsiBinaryExpression) rOperand, parts);
         } else {
             // 解析非二元表达式的右操作数，结果加入队列尾部保证顺序
-            parts.addLast(parseExpression(rOperand));
+            parts.addLast(doParseExpression(rOperand));
         }
     }
 
@@ -84,9 +84,20 @@ public class MyPluginConfigurable implements SearchableConfigurable {
      */
     @Override
     public boolean isModified() {
-        ClassFilter[] classFilters = MyPluginSettings.getInstance().getClassFilters();
+        MyPluginSettings settings = MyPluginSettings.getInstance();
+        ClassFilter[] classFilters = settings.getClassFilters();
         ClassFilter[] filters = this.mybatisSettingForm.mybatisClassFilterEditor.getFilters();
-        return !filterEquals(classFilters, filters);
+        if (!filterEquals(classFilters, filters)) {
+            return true;
+        }
+        // 性能配置
+        MyPluginSettingsFrom form = this.mybatisSettingForm;
+        return settings.isNonBlockingGutter() != form.nonBlockingGutterCheckBox.isSelected()
+                || settings.getGutterLatencyBudgetMs() != intValue(form.gutterLatencyBudgetSpinner)
+                || settings.getMaxWorkerThreads() != intValue(form.maxWorkerThreadsSpinner)
+                || settings.getIoRateLimitMbPerSec() != intValue(form.ioRateLimitSpinner)
+                || settings.getMaxMemoryCacheEntries() != intValue(form.maxMemoryCacheEntriesSpinner)
+                || settings.getMaxBackgroundCpuPercent() != intValue(form.maxBackgroundCpuSpinner);
     }
 
     /**
@@ -94,13 +105,35 @@ public class MyPluginConfigurable implements SearchableConfigurable {
      */
     @Override
     public void apply() {
+        final var settings = MyPluginSettings.getInstance();
         final var filters = this.mybatisSettingForm.mybatisClassFilterEditor.getFilters();
-        MyPluginSettings.getInstance().setClassFilters(filters);
+        settings.setClassFilters(filters);
+        // 性能配置（缓存引擎每次使用时读取，无需重启）
+        MyPluginSettingsFrom form = this.mybatisSettingForm;
+        settings.setNonBlockingGutter(form.nonBlockingGutterCheckBox.isSelected());
+        settings.setGutterLatencyBudgetMs(intValue(form.gutterLatencyBudgetSpinner));
+        settings.setMaxWorkerThreads(intValue(form.maxWorkerThreadsSpinner));
+        settings.setIoRateLimitMbPerSec(intValue(form.ioRateLimitSpinner));
+        settings.setMaxMemoryCacheEntries(intValue(form.maxMemoryCacheEntriesSpinner));
+        settings.setMaxBackgroundCpuPercent(intValue(form.maxBackgroundCpuSpinner));
     }
 
     @Override
     public void reset() {
-        final var filters = MyPluginSettings.getInstance().getClassFilters();
+        final var settings = MyPluginSettings.getInstance();
+        final var filters = settings.getClassFilters();
         this.mybatisSettingForm.mybatisClassFilterEditor.setFilters(filters);
+        // 性能配置
+        MyPluginSettingsFrom form = this.mybatisSettingForm;
+        form.nonBlockingGutterCheckBox.setSelected(settings.isNonBlockingGutter());
+        form.gutterLatencyBudgetSpinner.setValue(settings.getGutterLatencyBudgetMs());
+        form.maxWorkerThreadsSpinner.setValue(settings.getMaxWorkerThreads());
+        form.ioRateLimitSpinner.setValue(settings.getIoRateLimitMbPerSec());
+        form.maxMemoryCacheEntriesSpinner.setValue(settings.getMaxMemoryCacheEntries());
+        form.maxBackgroundCpuSpinner.setValue(settings.getMaxBackgroundCpuPercent());
+    }
+
+    private static int intValue(JSpinner spinner) {
+        return ((Number) spinner.getValue()).intValue();
     }
 }
\ No newline at end of file
@@ -17,6 +17,36 @@ public class MyPluginSettings implements PersistentStateComponent<MyPluginSettin
 
     private ClassFilter[] classFilters = ClassFilter.EMPTY_ARRAY;
 
+    /**
+     * 行标记只读内存快照，不在高亮线程中访问数据库
+     */
+    private boolean nonBlockingGutter = true;
+
+    /**
+     * 每个文件计算行标记的延迟预算（毫秒）
+     */
+    private int gutterLatencyBudgetMs = 50;
+
+    /**
+     * 缓存刷新最多使用的工作线程数，0 表示按 CPU 核心数
+     */
+    private int maxWorkerThreads = 0;
+
+    /**
+     * 缓存刷新读取文件的速率上限（MB/s），0 表示不限制
+     */
+    private int ioRateLimitMbPerSec = 0;
+
+    /**
+     * 行标记内存快照每个区域最多保留的条目数
+     */
+    private int maxMemoryCacheEntries = 50_000;
+
+    /**
+     * 后台缓存刷新最多占用的 CPU 比例（%，按所有核心计算）
+     */
+    private int maxBackgroundCpuPercent = 100;
+
     public static MyPluginSettings getInstance() {
         MyPluginSettings service = ApplicationManager.getApplication().getService(MyPluginSettings.class);
         if (service == null) {
@@ -50,6 +80,54 @@ public class MyPluginSettings implements PersistentStateComponent<MyPluginSettin
         this.classFilters = classFilters;
     }
 
+    public boolean isNonBlockingGutter() {
+        return nonBlockingGutter;
+    }
+
+    public void setNonBlockingGutter(boolean nonBlockingGutter) {
+        this.nonBlockingGutter = nonBlockingGutter;
+    }
+
+    public int getGutterLatencyBudgetMs() {
+        return gutterLatencyBudgetMs;
+    }
+
+    public void setGutterLatencyBudgetMs(int gutterLatencyBudgetMs) {
+        this.gutterLatencyBudgetMs = gutterLatencyBudgetMs;
+    }
+
+    public int getMaxWorkerThreads() {
+        return maxWorkerThreads;
+    }
+
+    public void setMaxWorkerThreads(int maxWorkerThreads) {
+        this.maxWorkerThreads = maxWorkerThreads;
+    }
+
+    public int getIoRateLimitMbPerSec() {
+        return ioRateLimitMbPerSec;
+    }
+
+    public void setIoRateLimitMbPerSec(int ioRateLimitMbPerSec) {
+        this.ioRateLimitMbPerSec = ioRateLimitMbPerSec;
+    }
+
+    public int getMaxMemoryCacheEntries() {
+        return maxMemoryCacheEntries;
+    }
+
+    public void setMaxMemoryCacheEntries(int maxMemoryCacheEntries) {
+        this.maxMemoryCacheEntries = maxMemoryCacheEntries;
+    }
+
+    public int getMaxBackgroundCpuPercent() {
+        return maxBackgroundCpuPercent;
+    }
+
+    public void setMaxBackgroundCpuPercent(int maxBackgroundCpuPercent) {
+        this.maxBackgroundCpuPercent = maxBackgroundCpuPercent;
+    }
+
     @Override
     public @Nullable MyPluginSettings getState() {
         return this;
@@ -18,6 +18,15 @@ public class MyPluginSettingsFrom {
     MybatisClassFilterEditor mybatisClassFilterEditor;
     Project myProject;
 
+    // 性能配置
+    JPanel performancePanel;
+    JCheckBox nonBlockingGutterCheckBox;
+    JSpinner gutterLatencyBudgetSpinner;
+    JSpinner maxWorkerThreadsSpinner;
+    JSpinner ioRateLimitSpinner;
+    JSpinner maxMemoryCacheEntriesSpinner;
+    JSpinner maxBackgroundCpuSpinner;
+
     public static Project getActiveProject() {
         // 方式1：使用官方API获取激活窗口（推荐）
         for (IdeFrame frame : WindowManager.getInstance().getAllProjectFrames()) {
@@ -43,6 +52,13 @@ public class MyPluginSettingsFrom {
         }
         mybatisClassFilterEditor = new MybatisClassFilterEditor(myProject);
         mybatisClassFilterEditor.setFilters(MyPluginSettings.getInstance().getClassFilters());
+
+        // 性能配置的取值范围
+        gutterLatencyBudgetSpinner = new JSpinner(new SpinnerNumberModel(50, 10, 1000, 10));
+        maxWorkerThreadsSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 256, 1));
+        ioRateLimitSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 10_000, 10));
+        maxMemoryCacheEntriesSpinner = new JSpinner(new SpinnerNumberModel(50_000, 1_000, 10_000_000, 10_000));
+        maxBackgroundCpuSpinner = new JSpinner(new SpinnerNumberModel(100, 1, 100, 5));
     }
 
 }
@@ -1,6 +1,7 @@
 package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util;
 
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
@@ -24,13 +25,9 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * IDEA 内置 H2 的连接管理器
  */
-public class DataBaseManager {
+public class DataBaseManager implements Disposable {
 
     private static final Logger LOG = Logger.getInstance(DataBaseManager.class);
-    /**
-     * 单项目锁
-     */
-    private static final ReentrantLock DB_LOCK = new ReentrantLock();
     /**
      * H2 连接URL
      */
@@ -51,6 +48,22 @@ public class DataBaseManager {
      * H2表存在性查询SQL
      */
     private static final String CHECK_TABLE_EXIST_SQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ? AND TABLE_SCHEMA = SCHEMA()";
+    /**
+     * H2列存在性查询SQL
+     */
+    private static final String CHECK_COLUMN_EXIST_SQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = ? AND COLUMN_NAME = ? AND TABLE_SCHEMA = SCHEMA()";
+    /**
+     * 旧版本建表后新增的列：{表名, 列名, 列定义}
+     */
+    private static final String[][] ADDED_COLUMNS = {
+            {"element_java", "line_number", "integer default 0 not null"},
+            {"element_java", "label", "character varying"},
+            {"element_java", "file_name", "character varying"},
+            {"element_xml", "line_number", "integer default 0 not null"},
+            {"element_xml", "label", "character varying"},
+            {"element_xml", "file_name", "character varying"},
+            {"file_digest", "parse_cost", "bigint default 0 not null"},
+    };
 
     static {
         // 表结构SQL文件映射初始化
@@ -63,10 +76,18 @@ public class DataBaseManager {
      * 项目实例
      */
     private final Project project;
+    /**
+     * 单项目锁（每个项目的数据源独立加锁，不同项目之间互不阻塞）
+     */
+    private final ReentrantLock dbLock = new ReentrantLock();
     /**
      * HikariCP 数据源
      */
     private HikariDataSource dataSource;
+    /**
+     * 服务是否已释放，释放后不再重建数据源
+     */
+    private volatile boolean disposed;
 
     public DataBaseManager(Project project) {
         this.project = project;
@@ -81,7 +102,7 @@ public class DataBaseManager {
      * 初始化 HikariCP 连接池 + H2 数据库
      */
     private void initH2DataSource() {
-        DB_LOCK.lock();
+        dbLock.lock();
         try {
             // 1. 加载 H2 驱动（兼容 IDEA 内置 H2）
             Class.forName("org.h2.Driver");
@@ -118,7 +139,7 @@ public class DataBaseManager {
         } catch (IOException e) {
             throw new RuntimeException("SQL 初始化文件读取失败", e);
         } finally {
-            DB_LOCK.unlock();
+            dbLock.unlock();
         }
     }
 
@@ -137,6 +158,25 @@ public class DataBaseManager {
                 // 执行建表SQL文件
                 executeSqlFile(stmt, sqlFilePath);
             }
+            upgradeTables(stmt);
+        }
+    }
+
+    /**
+     * 升级旧版本创建的表：补齐新增的列
+     * <p>
+     * 补列后旧数据中新列为空，清空文件摘要让所有文件在下次刷新时重新解析写入
+     */
+    private void upgradeTables(Statement stmt) throws SQLException {
+        boolean upgraded = false;
+        for (String[] column : ADDED_COLUMNS) {
+            if (checkColumnExists(column[0], column[1])) continue;
+            stmt.execute("ALTER TABLE " + column[0] + " ADD COLUMN IF NOT EXISTS " + column[1] + " " + column[2]);
+            upgraded = true;
+        }
+        if (upgraded) {
+            stmt.execute("DELETE FROM file_digest");
+            LOG.info("缓存表结构已升级，所有文件将在下次刷新时重新解析");
         }
     }
 
@@ -152,6 +192,19 @@ public class DataBaseManager {
         }
     }
 
+    /**
+     * 检查指定表中的列是否存在
+     */
+    private boolean checkColumnExists(String tableName, String columnName) throws SQLException {
+        try (Connection conn = getConnection(); PreparedStatement stmt = conn.prepareStatement(CHECK_COLUMN_EXIST_SQL)) {
+            stmt.setString(1, tableName.toUpperCase());
+            stmt.setString(2, columnName.toUpperCase());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
     /**
      * 读取并执行单个SQL文件
      */
@@ -178,6 +231,9 @@ public class DataBaseManager {
     public Connection getConnection() throws SQLException {
         // 校验数据源状态，异常时重建
         if (dataSource == null || dataSource.isClosed()) {
+            if (disposed) {
+                throw new SQLException("项目已关闭，缓存数据源不可用: " + project.getName());
+            }
             initH2DataSource();
         }
         // 从连接池获取连接
@@ -188,7 +244,7 @@ public class DataBaseManager {
      * 关闭数据源（IDEA 项目关闭时调用，释放连接池资源）
      */
     public void close() {
-        DB_LOCK.lock();
+        dbLock.lock();
         try {
             if (dataSource != null && !dataSource.isClosed()) {
                 dataSource.close(); // 关闭连接池（而非单连接）
@@ -198,10 +254,19 @@ public class DataBaseManager {
             // 插件关闭阶段静默处理，仅打印日志
             LOG.error("数据源关闭时异常", e);
         } finally {
-            DB_LOCK.unlock();
+            dbLock.unlock();
         }
     }
 
+    /**
+     * 项目释放时关闭数据源，之后的请求不再重建连接池
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        close();
+    }
+
     /**
      * 获取当前数据源状态
      */
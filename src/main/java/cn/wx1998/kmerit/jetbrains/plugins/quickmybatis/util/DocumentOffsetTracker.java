@@ -0,0 +1,254 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 文档偏移量跟踪器
+ * <p>
+ * 缓存中的偏移量是文件被解析时的偏移量，之后未保存的编辑会让这些偏移量失效。
+ * 这里记录每个文档自上次解析以来的所有修改（与 RangeMarker 的更新规则一致），
+ * 定位元素时把缓存的偏移量按这些修改平移到当前文档中的位置，每次定位只需一次二分查找。
+ * 重新解析文件时在读取偏移量的同一个读操作中调用 {@link #reset(VirtualFile)} 清空记录，
+ * 读操作期间文档不会被修改，之后的编辑都会重新记录。
+ */
+public final class DocumentOffsetTracker implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(DocumentOffsetTracker.class);
+
+    /**
+     * 单个文档的修改记录最多拆分的区间数，超过后不再平移（回退到按原偏移量定位）
+     */
+    private static final int MAX_CHANGES = 5000;
+
+    /**
+     * 文档 -> 自上次写入缓存以来的修改记录（文档被回收后自动移除）
+     */
+    private final Map<Document, ChangeLog> changeLogs = ContainerUtil.createConcurrentWeakMap();
+
+    public DocumentOffsetTracker() {
+        EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentListener() {
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                recordChange(event);
+            }
+        }, this);
+    }
+
+    public static DocumentOffsetTracker getInstance() {
+        return ApplicationManager.getApplication().getService(DocumentOffsetTracker.class);
+    }
+
+    private void recordChange(@NotNull DocumentEvent event) {
+        Document document = event.getDocument();
+        VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+        if (file == null || !file.isInLocalFileSystem()) {
+            return;
+        }
+        String extension = file.getExtension();
+        if (!"java".equals(extension) && !"xml".equals(extension)) {
+            return;
+        }
+        changeLogs.computeIfAbsent(document, d -> new ChangeLog()).add(event.getOffset(), event.getOldLength(), event.getNewLength());
+    }
+
+    /**
+     * 文件已按当前内容重新解析，清空修改记录（需要与读取偏移量在同一个读操作中调用）
+     */
+    public void reset(@NotNull VirtualFile file) {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        if (document != null) {
+            changeLogs.remove(document);
+        }
+    }
+
+    /**
+     * 把缓存中的偏移量范围平移到文件当前文档中的位置，文件没有打开或没有修改时原样返回
+     */
+    @NotNull
+    public TextRange translate(@NotNull VirtualFile file, int startOffset, int endOffset) {
+        Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        ChangeLog changeLog = document == null ? null : changeLogs.get(document);
+        if (changeLog == null) {
+            return new TextRange(startOffset, endOffset);
+        }
+        TextRange range = changeLog.translate(startOffset, endOffset);
+        if (range == null) {
+            LOG.debug("文档修改次数过多，不再平移偏移量: " + file.getPath());
+            return new TextRange(startOffset, endOffset);
+        }
+        // 防御：不超出当前文档范围
+        int length = document.getTextLength();
+        int start = Math.min(range.getStartOffset(), length);
+        int end = Math.max(start, Math.min(range.getEndOffset(), length));
+        return new TextRange(start, end);
+    }
+
+    /**
+     * 把缓存中的单个偏移量平移到文件当前文档中的位置
+     */
+    public int translateOffset(@NotNull VirtualFile file, int offset) {
+        return translate(file, offset, offset).getStartOffset();
+    }
+
+    @Override
+    public void dispose() {
+        changeLogs.clear();
+    }
+
+    /**
+     * 单个文档的修改记录，压缩为原偏移量到当前偏移量的分段映射
+     * <p>
+     * 保存解析时的文本中至今未被修改过的区间（按原偏移量排序）及其在当前文档中的起点，区间之间是被替换的内容；
+     * 每次修改更新受影响的区间并平移其后的区间，定位时二分查找偏移量所在的区间，与修改次数无关
+     */
+    static final class ChangeLog {
+
+        /**
+         * 最后一个区间延伸到文档末尾
+         */
+        private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+        private int[] origStarts = {0};
+        private int[] curStarts = {0};
+        private int[] lengths = {UNBOUNDED};
+        private int size = 1;
+
+        private boolean overflow;
+
+        /**
+         * 记录一次修改（偏移量为修改发生时文档中的偏移量）
+         */
+        synchronized void add(int offset, int oldLength, int newLength) {
+            if (overflow) {
+                return;
+            }
+            if (size >= MAX_CHANGES) {
+                overflow = true;
+                origStarts = curStarts = lengths = null;
+                return;
+            }
+            long editEnd = (long) offset + oldLength;
+            int delta = newLength - oldLength;
+            int[] newOrigStarts = new int[size + 1];
+            int[] newCurStarts = new int[size + 1];
+            int[] newLengths = new int[size + 1];
+            // 修改之前的区间不受影响，直接复制
+            int first = firstEndingAfter(offset);
+            System.arraycopy(origStarts, 0, newOrigStarts, 0, first);
+            System.arraycopy(curStarts, 0, newCurStarts, 0, first);
+            System.arraycopy(lengths, 0, newLengths, 0, first);
+            int count = first;
+            for (int i = first; i < size; i++) {
+                int origStart = origStarts[i];
+                int curStart = curStarts[i];
+                long curEnd = curEnd(i);
+                if (curStart >= editEnd) {
+                    // 修改之后的区间：整体平移
+                    newOrigStarts[count] = origStart;
+                    newCurStarts[count] = curStart + delta;
+                    newLengths[count++] = lengths[i];
+                    continue;
+                }
+                // 与修改重叠：保留修改前后未被替换的部分
+                if (curStart < offset) {
+                    newOrigStarts[count] = origStart;
+                    newCurStarts[count] = curStart;
+                    newLengths[count++] = offset - curStart;
+                }
+                if (curEnd > editEnd) {
+                    newOrigStarts[count] = (int) (origStart + (editEnd - curStart));
+                    newCurStarts[count] = offset + newLength;
+                    newLengths[count++] = lengths[i] == UNBOUNDED ? UNBOUNDED : (int) (curEnd - editEnd);
+                }
+            }
+            origStarts = newOrigStarts;
+            curStarts = newCurStarts;
+            lengths = newLengths;
+            size = count;
+        }
+
+        /**
+         * 把原偏移量范围平移到当前文档中的位置（与 RangeMarker 的规则一致）：
+         * 起点在修改之前的插入点上时跟随插入内容后移，终点不跟随；起点或终点落在被替换的内容中时，分别收缩到替换内容的起点和终点
+         *
+         * @return 平移后的范围，修改次数过多时返回 null
+         */
+        synchronized TextRange translate(int startOffset, int endOffset) {
+            if (overflow) {
+                return null;
+            }
+            int start;
+            int index = lastStartingAtOrBefore(startOffset);
+            if (index < 0) {
+                // 落在文档开头被替换的内容中
+                start = 0;
+            } else if (startOffset - origStarts[index] < lengths[index]) {
+                start = curStarts[index] + (startOffset - origStarts[index]);
+            } else {
+                start = (int) curEnd(index);
+            }
+            int end;
+            index = lastStartingBefore(endOffset);
+            if (index < 0) {
+                end = curStarts[0];
+            } else if (endOffset - origStarts[index] <= lengths[index]) {
+                end = curStarts[index] + (endOffset - origStarts[index]);
+            } else {
+                // 落在被替换的内容中，最后一个区间延伸到文档末尾，这里一定有下一个区间
+                end = curStarts[index + 1];
+            }
+            return new TextRange(start, Math.max(start, end));
+        }
+
+        private long curEnd(int index) {
+            return lengths[index] == UNBOUNDED ? Long.MAX_VALUE : (long) curStarts[index] + lengths[index];
+        }
+
+        /**
+         * 当前偏移量上第一个终点在 offset 之后的区间
+         */
+        private int firstEndingAfter(int offset) {
+            int low = 0;
+            int high = size - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (curEnd(mid) > offset) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * 原偏移量不大于 offset 的最后一个区间，没有时返回 -1
+         */
+        private int lastStartingAtOrBefore(int offset) {
+            int index = Arrays.binarySearch(origStarts, 0, size, offset);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        /**
+         * 原偏移量小于 offset 的最后一个区间，没有时返回 -1
+         */
+        private int lastStartingBefore(int offset) {
+            int index = Arrays.binarySearch(origStarts, 0, size, offset);
+            return index >= 0 ? index - 1 : -index - 2;
+        }
+    }
+}
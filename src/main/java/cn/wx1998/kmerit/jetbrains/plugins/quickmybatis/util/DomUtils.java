@@ -4,7 +4,11 @@ import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.MyBatisXmlParser;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.MyBatisXmlParserFactory;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
@@ -18,6 +22,11 @@ public final class DomUtils {
 
     private static final Logger LOG = Logger.getInstance(DomUtils.class);
 
+    /**
+     * 文件是否为 MyBatis Mapper 文件的缓存，文件修改后失效
+     */
+    private static final Key<CachedValue<Boolean>> IS_MYBATIS_FILE_KEY = Key.create("quickmybatis.isMybatisFile");
+
     /**
      * Private constructor to prevent instantiation.
      * Throws UnsupportedOperationException to ensure this utility class cannot be instantiated.
@@ -29,17 +38,20 @@ public final class DomUtils {
     /**
      * Check if a file is a MyBatis XML file.
      * Determines if the given PsiFile is a MyBatis Mapper XML file by checking file type, root tag name, etc.
+     * The result is memoised per file and recomputed only after the file is modified.
      *
      * @param file The PsiFile object to check
      * @return True if it's a MyBatis XML file, false otherwise
      */
     public static boolean isMybatisFile(@Nullable PsiFile file) {
-        LOG.debug("Checking if file is a MyBatis XML file: " + (file != null ? file.getName() : "null"));
-
         if (!(file instanceof XmlFile)) {
-            LOG.debug("File is null or not an XmlFile");
             return false;
         }
+        return CachedValuesManager.getCachedValue(file, IS_MYBATIS_FILE_KEY, () -> CachedValueProvider.Result.create(computeIsMybatisFile(file), file));
+    }
+
+    private static boolean computeIsMybatisFile(@NotNull PsiFile file) {
+        LOG.debug("Checking if file is a MyBatis XML file: " + file.getName());
 
         // Basic validation
         XmlTag rootTag = ((XmlFile) file).getRootTag();
@@ -0,0 +1,137 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.setting.MyPluginSettings;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.psi.search.UsageSearchContext;
+import com.intellij.ui.classFilter.ClassFilter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Java 文件预筛选器
+ * <p>
+ * 基于 IDEA 的单词索引（IdIndex），在构建任何 PSI 之前排除与 MyBatis 无关的 Java 文件。
+ * 候选词包括：配置的 SqlSession 类短名、mapper namespace 的短名。
+ * 文件中只要出现任意一个候选词（代码、字符串或注释中）即视为候选文件。
+ * statement id（insert、list、get 等）几乎出现在所有 Java 文件中，不作为候选词；
+ * 引用 statement 的文件一定出现 SqlSession 类短名或 namespace 短名。
+ */
+public class JavaFilePrefilter {
+
+    private static final Logger LOG = Logger.getInstance(JavaFilePrefilter.class);
+
+    /**
+     * 每个读操作查询的候选词数量，分批查询避免长时间持有读锁
+     */
+    private static final int WORDS_PER_READ_ACTION = 50;
+
+    /**
+     * 候选文件集合，为 null 时表示未启用筛选（所有文件都需要解析）
+     */
+    private final Set<VirtualFile> candidates;
+
+    private JavaFilePrefilter(Set<VirtualFile> candidates) {
+        this.candidates = candidates;
+    }
+
+    /**
+     * 根据缓存中的 XML SQL ID 创建预筛选器（会等待索引就绪）
+     *
+     * @param project project
+     * @param sqlIds  XML 中所有的 SQL ID（包含 mapper 的 namespace）
+     * @return 预筛选器
+     */
+    @NotNull
+    public static JavaFilePrefilter create(@NotNull Project project, @NotNull Collection<String> sqlIds) {
+        Set<String> words = collectWords(sqlIds);
+        if (sqlIds.isEmpty() || words.isEmpty()) {
+            // 缓存中还没有任何 XML 信息时无法判断相关性，保守起见不做筛选
+            LOG.debug("XML缓存为空，不启用Java文件预筛选");
+            return new JavaFilePrefilter(null);
+        }
+        Set<VirtualFile> candidates = new HashSet<>();
+        List<String> wordList = new ArrayList<>(words);
+        for (int from = 0; from < wordList.size(); from += WORDS_PER_READ_ACTION) {
+            List<String> chunk = wordList.subList(from, Math.min(from + WORDS_PER_READ_ACTION, wordList.size()));
+            // 每批单独一个可被写操作打断的读操作，被打断时整批重新查询
+            candidates.addAll(ReadAction.nonBlocking(() -> findCandidates(project, chunk)).inSmartMode(project).expireWhen(project::isDisposed).executeSynchronously());
+        }
+        LOG.debug("Java文件预筛选完成，候选词数量: " + words.size() + "，候选文件数量: " + candidates.size());
+        return new JavaFilePrefilter(candidates);
+    }
+
+    /**
+     * 查询出现任意一个候选词的 Java 文件（需在读操作中调用）
+     */
+    private static Set<VirtualFile> findCandidates(@NotNull Project project, @NotNull List<String> words) {
+        PsiSearchHelper searchHelper = PsiSearchHelper.getInstance(project);
+        GlobalSearchScope scope = GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.projectScope(project), JavaFileType.INSTANCE);
+        Set<VirtualFile> result = new HashSet<>();
+        for (String word : words) {
+            ProgressManager.checkCanceled();
+            searchHelper.processCandidateFilesForText(scope, UsageSearchContext.ANY, true, word, file -> {
+                result.add(file);
+                return true;
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 收集候选词：SqlSession 类短名 + mapper namespace 的类短名
+     * <p>
+     * mapper 标签的 SQL ID 就是 namespace，statement 的 SQL ID 为 namespace.id，
+     * 因此 SQL ID 去掉最后一段后仍在集合中的，去掉的那段是 statement id，剩下的是 namespace。
+     */
+    private static Set<String> collectWords(@NotNull Collection<String> sqlIds) {
+        Set<String> words = new HashSet<>();
+        ClassFilter[] classFilters = MyPluginSettings.getInstance().getClassFilters();
+        if (classFilters != null) {
+            for (ClassFilter classFilter : classFilters) {
+                addLastSegment(words, classFilter.getPattern());
+            }
+        }
+        Set<String> sqlIdSet = new HashSet<>(sqlIds);
+        for (String sqlId : sqlIdSet) {
+            int dot = sqlId == null ? -1 : sqlId.lastIndexOf('.');
+            if (dot > 0 && sqlIdSet.contains(sqlId.substring(0, dot))) {
+                addLastSegment(words, sqlId.substring(0, dot));
+            }
+        }
+        return words;
+    }
+
+    private static void addLastSegment(Set<String> words, String name) {
+        if (name == null || name.trim().isEmpty()) return;
+        String word = name.substring(name.lastIndexOf('.') + 1).trim();
+        if (!word.isEmpty()) {
+            words.add(word);
+        }
+    }
+
+    /**
+     * 是否启用了筛选
+     */
+    public boolean isEnabled() {
+        return candidates != null;
+    }
+
+    /**
+     * 文件是否需要解析
+     */
+    public boolean isCandidate(@NotNull VirtualFile file) {
+        return candidates == null || candidates.contains(file);
+    }
+}
@@ -5,13 +5,18 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -26,19 +31,43 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class ProjectFileUtils {
 
     private static final Logger LOG = Logger.getInstance(ProjectFileUtils.class);
+    /**
+     * 单个文件摘要计算的基础超时（未限速时）
+     */
+    private static final long DIGEST_TIMEOUT_MS = 5_000;
+
+    /**
+     * 一批文件摘要计算的基础超时（未限速时）
+     */
+    private static final long DIGEST_BATCH_TIMEOUT_MS = 60_000;
+
+    /**
+     * 文件摘要计算线程池（应用级共享，并发数=资源预算中的工作线程数，空闲时不占用线程）
+     */
+    private static ExecutorService digestExecutor;
+    private static int digestExecutorThreads;
+
+    /**
+     * 获取摘要线程池，工作线程数的设置变化后按新的并发数重新创建（旧线程池执行完已提交的任务后不再占用线程）
+     */
+    private static synchronized ExecutorService getDigestExecutor() {
+        int threads = ResourceBudget.maxWorkerThreads();
+        if (digestExecutor == null || digestExecutorThreads != threads) {
+            digestExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("MyBatisFileDigest", threads);
+            digestExecutorThreads = threads;
+        }
+        return digestExecutor;
+    }
 
     /**
      * 获取项目中指定类型的所有文件的路径
@@ -81,6 +110,44 @@ public class ProjectFileUtils {
         });
     }
 
+    /**
+     * 获取项目中指定类型的所有文件（只返回 VirtualFile，不创建 PsiFile）
+     *
+     * @param project    project
+     * @param extensions 类型列表范围
+     * @return 符合类型列表范围的文件列表
+     */
+    public static List<VirtualFile> getVirtualFilesByTypeInSourceRoots(@NotNull Project project, @NotNull String... extensions) {
+        return ReadAction.compute(() -> {
+            List<VirtualFile> result = new ArrayList<>();
+            Set<String> extensionRange = new HashSet<>(Arrays.asList(extensions));
+            ProjectFileIndex fileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+            for (VirtualFile contentRoot : ProjectRootManager.getInstance(project).getContentSourceRoots()) {
+                if (contentRoot != null && contentRoot.isDirectory() && contentRoot.isValid()) {
+                    collectVirtualFilesRecursively(fileIndex, contentRoot, result, extensionRange);
+                }
+            }
+            return result;
+        });
+    }
+
+    private static void collectVirtualFilesRecursively(@NotNull ProjectFileIndex fileIndex, VirtualFile directory, List<VirtualFile> result, Set<String> extensionRange) {
+        if (directory == null || !directory.isDirectory() || !directory.isValid() || extensionRange.isEmpty()) return;
+        for (VirtualFile file : directory.getChildren()) {
+            if (file.isDirectory()) {
+                collectVirtualFilesRecursively(fileIndex, file, result, extensionRange);
+                continue;
+            }
+            String extension = file.getExtension() != null ? file.getExtension().toLowerCase() : null;
+            if (!extensionRange.contains(extension)) continue;
+            // 当前文件已经忽略则跳过
+            if (fileIndex.isExcluded(file)) continue;
+            // 不是源码目录文件则跳过
+            if (!fileIndex.isInSourceContent(file)) continue;
+            result.add(file);
+        }
+    }
+
     private static void findXmlFilesRecursively(@NotNull Project project, VirtualFile directory, List<PsiFile> result, String... extensions) {
         // 递归退出条件
         if (directory == null || !directory.isDirectory() || !directory.isValid() || extensions == null || extensions.length == 0)
@@ -119,6 +186,8 @@ public class ProjectFileUtils {
             return "";
         }
 
+        // 按 IO 速率上限等待
+        ResourceBudget.acquireIo(file.length());
         try (FileInputStream fis = new FileInputStream(file)) {
             // 获取消息摘要实例
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
@@ -149,6 +218,18 @@ public class ProjectFileUtils {
         }
     }
 
+    /**
+     * 在进度指示器下计算文件摘要，等待 IO 额度时可以被取消
+     */
+    private static String calculateFileDigest(String filePath, @Nullable ProgressIndicator indicator) {
+        if (indicator == null) {
+            return calculateFileDigest(filePath);
+        }
+        String[] digest = {""};
+        ProgressManager.getInstance().executeProcessUnderProgress(() -> digest[0] = calculateFileDigest(filePath), indicator);
+        return digest[0];
+    }
+
     /**
      * 并行计算文件摘要（线程安全 + 可控并发 + 防重复计算）
      *
@@ -156,39 +237,38 @@ public class ProjectFileUtils {
      * @return 线程安全的文件路径->摘要映射
      */
     public static Map<String, String> calculateFileDigestsParallel(Set<String> filePaths) {
+        return calculateFileDigestsParallel(filePaths, null);
+    }
+
+    /**
+     * 并行计算文件摘要，等待 IO 额度时响应进度指示器的取消（取消后未计算的文件不返回摘要）
+     *
+     * @param filePaths 路径列表
+     * @param indicator 刷新任务的进度指示器，为 null 时不检查取消
+     * @return 线程安全的文件路径->摘要映射
+     */
+    public static Map<String, String> calculateFileDigestsParallel(Set<String> filePaths, @Nullable ProgressIndicator indicator) {
         // 步骤1：健壮性
         if (filePaths.isEmpty()) {
             return Collections.emptyMap();
         }
+        ExecutorService executor = getDigestExecutor();
+        // 限速时超时按需要读取的总字节数延长（同一批文件共享速率，单个文件也可能等待其他文件读完）
+        long totalBytes = filePaths.stream().mapToLong(filePath -> new File(filePath).length()).sum();
+        long fileTimeoutMs = ResourceBudget.ioTimeoutMs(DIGEST_TIMEOUT_MS, totalBytes);
+        long batchTimeoutMs = ResourceBudget.ioTimeoutMs(DIGEST_BATCH_TIMEOUT_MS, totalBytes);
         // 步骤2：初始化线程安全的缓存（防止重复计算）
-        LoadingCache<String, String> digestCache = CacheBuilder.newBuilder().concurrencyLevel(Runtime.getRuntime().availableProcessors()) // 并发级别=CPU核心数
+        LoadingCache<String, String> digestCache = CacheBuilder.newBuilder().concurrencyLevel(ResourceBudget.maxWorkerThreads()) // 并发级别=工作线程数
                 .maximumSize(filePaths.size()) // 缓存大小=文件数
                 .build(new CacheLoader<>() {
                     @Override
                     public String load(String filePath) {
                         // 核心：单个文件摘要计算（带超时/异常处理）
-                        return calculateFileDigestWithTimeout(filePath, 5000); // 5秒超时
+                        return calculateFileDigestWithTimeout(filePath, fileTimeoutMs, indicator); // 基础5秒超时，限速时延长
                     }
                 });
 
-        // 步骤3：可控线程池并行计算（避免并行流的线程调度开销）
-        ExecutorService executor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), // 核心线程数=CPU核心数
-                Runtime.getRuntime().availableProcessors() * 2, // 最大线程数=2*CPU核心数
-                60, TimeUnit.SECONDS, // 空闲线程超时
-                new ArrayBlockingQueue<>(1000), // 有界队列，防止内存溢出
-                new ThreadFactory() {
-                    private final AtomicInteger count = new AtomicInteger(0);
-
-                    @Override
-                    public Thread newThread(Runnable r) {
-                        Thread thread = new Thread(r, "digest-calc-" + count.incrementAndGet());
-                        thread.setDaemon(true); // 守护线程，不阻塞程序退出
-                        thread.setPriority(Thread.NORM_PRIORITY - 1); // 降低优先级，不抢占主线程
-                        return thread;
-                    }
-                }, new ThreadPoolExecutor.CallerRunsPolicy() // 队列满时，由调用线程执行，避免任务丢失
-        );
-
+        // 步骤3：在共享的摘要线程池上并行计算（应用级线程池，不随每次调用创建和关闭线程）
         try {
             // 提交所有文件路径的计算任务
             List<CompletableFuture<Void>> futures = filePaths.stream().map(filePath -> CompletableFuture.runAsync(() -> {
@@ -201,7 +281,7 @@ public class ProjectFileUtils {
             }, executor)).toList();
 
             // 等待所有任务完成（带总超时）
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(batchTimeoutMs, TimeUnit.MILLISECONDS);
 
             // 步骤4：将缓存结果转换为普通Map（线程安全）
             Map<String, String> resultMap = new HashMap<>();
@@ -218,21 +298,11 @@ public class ProjectFileUtils {
             return resultMap;
 
         } catch (TimeoutException e) {
-            LOG.error("文件摘要计算超时（总超时60秒）", e);
+            LOG.error("文件摘要计算超时（总超时" + batchTimeoutMs + "ms）", e);
             return Collections.emptyMap();
         } catch (Exception e) {
             LOG.error("文件摘要并行计算异常", e);
             return Collections.emptyMap();
-        } finally {
-            // 优雅关闭线程池
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-            }
         }
     }
 
@@ -243,14 +313,21 @@ public class ProjectFileUtils {
      * @param timeoutMs 超时时间（毫秒）
      * @return 文件摘要
      */
-    private static String calculateFileDigestWithTimeout(String filePath, long timeoutMs) {
-        CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> calculateFileDigest(filePath));
+    private static String calculateFileDigestWithTimeout(String filePath, long timeoutMs, @Nullable ProgressIndicator indicator) {
+        CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> calculateFileDigest(filePath, indicator));
         try {
             return future.get(timeoutMs, TimeUnit.MILLISECONDS);
         } catch (TimeoutException e) {
             future.cancel(true);
             LOG.error("计算文件摘要超时（" + timeoutMs + "ms）：filePath=" + filePath, e);
             return "";
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ProcessCanceledException) {
+                // 刷新已取消
+                return "";
+            }
+            LOG.error("计算文件摘要失败：filePath=" + filePath, e);
+            return "";
         } catch (Exception e) {
             LOG.error("计算文件摘要失败：filePath=" + filePath, e);
             return "";
@@ -0,0 +1,135 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.setting.MyPluginSettings;
+import com.google.common.util.concurrent.RateLimiter;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存引擎的资源预算（工作线程数、读取文件的速率、内存快照大小、后台 CPU 占比）
+ * <p>
+ * 每次使用时读取插件设置，修改设置后无需重启即可生效；刷新调度、摘要线程池和定时扫描共用这些限制
+ */
+public final class ResourceBudget {
+
+    private static final int CORES = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 内存快照条目数的下限，避免设置过小导致快照反复清空
+     */
+    private static final int MIN_MEMORY_CACHE_ENTRIES = 1_000;
+
+    /**
+     * 单次让出 CPU 的最长时间
+     */
+    private static final long MAX_THROTTLE_MS = 1_000;
+
+    /**
+     * 等待 IO 额度时检查取消的间隔
+     */
+    private static final long IO_POLL_MS = 50;
+
+    /**
+     * 读取文件的速率限制（许可单位为 KB），所有项目共享
+     */
+    private static final RateLimiter IO_LIMITER = RateLimiter.create(Double.MAX_VALUE);
+
+    private static volatile int ioLimiterRateMb = 0;
+
+    private ResourceBudget() {
+    }
+
+    /**
+     * 缓存刷新最多使用的工作线程数：设置的线程数（0 表示 CPU 核心数）与 CPU 占比允许的线程数中的较小值
+     */
+    public static int maxWorkerThreads() {
+        MyPluginSettings settings = MyPluginSettings.getInstance();
+        int threads = settings.getMaxWorkerThreads() > 0 ? settings.getMaxWorkerThreads() : CORES;
+        int cpuThreads = Math.max(1, CORES * maxCpuPercent() / 100);
+        return Math.max(1, Math.min(threads, cpuThreads));
+    }
+
+    /**
+     * 后台刷新最多占用的 CPU 比例（0~1，按所有核心计算）
+     */
+    public static double maxCpuShare() {
+        return maxCpuPercent() / 100.0;
+    }
+
+    private static int maxCpuPercent() {
+        return Math.min(100, Math.max(1, MyPluginSettings.getInstance().getMaxBackgroundCpuPercent()));
+    }
+
+    /**
+     * 行标记内存快照每个区域最多保留的条目数
+     */
+    public static int maxMemoryCacheEntries() {
+        return Math.max(MIN_MEMORY_CACHE_ENTRIES, MyPluginSettings.getInstance().getMaxMemoryCacheEntries());
+    }
+
+    /**
+     * 读取文件前申请 IO 额度，超过速率上限时等待；等待期间检查取消，刷新被取消时抛出 {@link ProcessCanceledException}
+     * 每个文件只在真正从磁盘读取的地方（计算摘要）申请一次
+     *
+     * @param bytes 将要读取的字节数
+     */
+    public static void acquireIo(long bytes) {
+        int rateMb = MyPluginSettings.getInstance().getIoRateLimitMbPerSec();
+        if (rateMb <= 0 || bytes <= 0) {
+            return;
+        }
+        if (rateMb != ioLimiterRateMb) {
+            IO_LIMITER.setRate(rateMb * 1024.0);
+            ioLimiterRateMb = rateMb;
+        }
+        int permits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, bytes / 1024));
+        while (!IO_LIMITER.tryAcquire(permits, IO_POLL_MS, TimeUnit.MILLISECONDS)) {
+            ProgressManager.checkCanceled();
+            try {
+                Thread.sleep(IO_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            }
+        }
+    }
+
+    /**
+     * 读取指定字节数的超时时间：基础超时加上按速率上限读取这些字节所需的时间
+     *
+     * @param baseMs 不限速时的超时时间
+     * @param bytes  将要读取的字节数
+     */
+    public static long ioTimeoutMs(long baseMs, long bytes) {
+        int rateMb = MyPluginSettings.getInstance().getIoRateLimitMbPerSec();
+        if (rateMb <= 0) {
+            return baseMs;
+        }
+        return baseMs + bytes * 1000 / (rateMb * 1024L * 1024L);
+    }
+
+    /**
+     * 单线程的后台任务处理完一项工作后调用，按 CPU 占比让出时间
+     *
+     * @param busyNanos 刚完成的工作占用的时间
+     */
+    public static void throttleCpu(long busyNanos) {
+        // 单线程最多占用一个核心，按所有核心计算的占比折算为单个核心的占空比
+        double coreShare = maxCpuShare() * CORES;
+        if (coreShare >= 1 || busyNanos <= 0) {
+            return;
+        }
+        long sleepMs = Math.min(MAX_THROTTLE_MS, TimeUnit.NANOSECONDS.toMillis((long) (busyNanos * (1 / coreShare - 1))));
+        if (sleepMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        }
+    }
+}
@@ -2,32 +2,59 @@ package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util;
 
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.JavaElementInfo;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * 元素定位器（基于偏移量定位，参考IDEA书签核心思想）
  * 支持 XML 标签和 Java 元素的精确定位
+ * <p>
+ * 缓存的偏移量会先经过 {@link DocumentOffsetTracker} 按未保存的编辑平移，
+ * XML 标签通过按起始偏移量排序的标签范围索引二分查找，不再线性扫描整个文件
  */
 public class TagLocator {
 
     private static final Logger LOG = Logger.getInstance(TagLocator.class);
     private static final String LOG_PREFIX = "[TagLocator] ";
 
+    /**
+     * XML 文件的标签范围索引，文件修改后失效
+     */
+    private static final Key<CachedValue<XmlTagRanges>> XML_TAG_RANGES_KEY = Key.create("quickmybatis.xmlTagRanges");
+
     // ==========================================================================
     // 元素信息创建方法
     // ==========================================================================
@@ -51,8 +78,12 @@ public class TagLocator {
         int startOffset = textRange.getStartOffset();
         int endOffset = textRange.getEndOffset();
 
-        // 构建并返回XmlElementInfo
-        return new XmlElementInfo(filePath, startOffset, endOffset, elementType, sqlId, databaseId);
+        // 构建XmlElementInfo，并附带弹出列表展示所需的行号、显示文本和文件名
+        XmlElementInfo info = new XmlElementInfo(filePath, startOffset, endOffset, elementType, sqlId, databaseId);
+        info.setLineNumber(getLineNumber(containingFile, startOffset));
+        info.setLabel(element.getParentTag() != null ? sqlId : element.getName());
+        info.setFileName(virtualFile.getName());
+        return info;
     }
 
     /**
@@ -74,8 +105,69 @@ public class TagLocator {
         int startOffset = textRange.getStartOffset();
         int endOffset = textRange.getEndOffset();
 
-        // 构建并返回JavaElementInfo
-        return new JavaElementInfo(filePath, startOffset, endOffset, elementType, sqlId);
+        // 构建JavaElementInfo，并附带弹出列表展示所需的行号、显示文本和文件名
+        JavaElementInfo info = new JavaElementInfo(filePath, startOffset, endOffset, elementType, sqlId);
+        info.setLineNumber(getLineNumber(containingFile, startOffset));
+        info.setLabel(getJavaLabel(element));
+        info.setFileName(virtualFile.getName());
+        return info;
+    }
+
+    /**
+     * 从 Java 存根创建 Mapper 接口或接口方法的元素信息：只读取全限定名、方法名和参数名，不加载 AST，
+     * 不记录偏移量和行号，跳转时通过 {@link #findJavaElementByName} 按名称查找
+     */
+    @Nullable
+    public static JavaElementInfo createStubJavaElementInfo(@NotNull PsiMember element, @NotNull String sqlId, @NotNull String elementType) {
+        PsiFile containingFile = element.getContainingFile();
+        VirtualFile virtualFile = getVirtualFile(containingFile);
+        if (virtualFile == null) {
+            LOG.debug(LOG_PREFIX + "PsiMember对应的文件不存在或无效: " + element);
+            return null;
+        }
+        JavaElementInfo info = new JavaElementInfo(virtualFile.getPath(), JavaElementInfo.NO_OFFSET, JavaElementInfo.NO_OFFSET, elementType, sqlId);
+        info.setLabel(getJavaLabel(element));
+        info.setFileName(virtualFile.getName());
+        return info;
+    }
+
+    /**
+     * 偏移量所在行号（从 1 开始），偏移量超出文件内容时返回 0
+     * 直接使用 PSI 文件的文本计算，不为没有打开的文件创建 Document（全量刷新时避免每个文件多一份文本副本）
+     */
+    private static int getLineNumber(@NotNull PsiFile file, int offset) {
+        CharSequence contents = file.getViewProvider().getContents();
+        if (offset < 0 || offset > contents.length()) {
+            return 0;
+        }
+        return StringUtil.offsetToLineNumber(contents, offset) + 1;
+    }
+
+    /**
+     * Java 元素在弹出列表中的显示文本（与 XML 侧的渲染规则一致）
+     */
+    @NotNull
+    private static String getJavaLabel(@NotNull PsiElement element) {
+        if (element instanceof PsiClass psiClass) {
+            return psiClass.getName() != null ? psiClass.getName() : "未知类";
+        }
+        if (element instanceof PsiMethod psiMethod) {
+            String paramNames = Arrays.stream(psiMethod.getParameterList().getParameters()).map(PsiParameter::getName).collect(Collectors.joining(","));
+            return psiMethod.getName() + "(" + paramNames + ")";
+        }
+        if (element instanceof PsiField psiField) {
+            return psiField.getName();
+        }
+        PsiMethodCallExpression methodCall = PsiTreeUtil.getParentOfType(element, PsiMethodCallExpression.class, false);
+        if (methodCall != null) {
+            // 索引未就绪时无法解析参数中的常量，直接使用原始代码
+            String firstParamValue = DumbService.isDumb(element.getProject()) ? null : JavaService.parseExpression(methodCall);
+            String methodName = methodCall.getMethodExpression().getReferenceName();
+            String originalText = methodCall.getText();
+            return firstParamValue != null ? JavaService.replaceFirstParam(originalText, methodName, firstParamValue) : originalText;
+        }
+        String text = element.getText();
+        return text.length() > 20 ? text.substring(0, 20) + "..." : text;
     }
 
     // ==========================================================================
@@ -107,7 +199,8 @@ public class TagLocator {
             return null;
         }
 
-        return findXmlTagByRange(xmlFile, info.getStartOffset(), info.getEndOffset(), info);
+        TextRange range = DocumentOffsetTracker.getInstance().translate(targetFile, info.getStartOffset(), info.getEndOffset());
+        return findXmlTagByRange(xmlFile, range.getStartOffset(), range.getEndOffset(), info);
     }
 
     // ==========================================================================
@@ -120,6 +213,10 @@ public class TagLocator {
      */
     @Nullable
     public static PsiElement findJavaTagByInfo(@NotNull JavaElementInfo info, @NotNull Project project) {
+        // 从存根提取的接口和接口方法没有偏移量，按名称查找
+        if (!info.hasOffset() && !isEmpty(info.getFilePath()) && !isEmpty(info.getSqlId())) {
+            return DumbService.isDumb(project) ? null : findJavaElementByName(project, info.getFilePath(), info.getElementType(), info.getSqlId());
+        }
         // 1. 前置校验：过滤无效参数
         if (!validateJavaElementInfo(info)) {
             return null;
@@ -138,7 +235,36 @@ public class TagLocator {
             LOG.debug(LOG_PREFIX + "文件不是Java类型: " + info.getFilePath());
             return null;
         }
-        return findJavaElementByRange(javaFile, info.getStartOffset(), info.getEndOffset(), info.getElementType(), info);
+        TextRange range = DocumentOffsetTracker.getInstance().translate(targetFile, info.getStartOffset(), info.getEndOffset());
+        return findJavaElementByRange(javaFile, range.getStartOffset(), range.getEndOffset(), info.getElementType(), info);
+    }
+
+    /**
+     * 按名称查找 Mapper 接口（sqlId 为全限定名）或接口方法（sqlId 为 全限定名.方法名），需要索引就绪
+     * 同名类有多个时优先返回位于 filePath 中的类，重载方法返回第一个
+     */
+    @Nullable
+    public static PsiElement findJavaElementByName(@NotNull Project project, @NotNull String filePath, @NotNull String elementType, @NotNull String sqlId) {
+        boolean isMethod = JavaService.TYPE_INTERFACE_METHOD.equals(elementType);
+        int lastDot = sqlId.lastIndexOf('.');
+        if (isMethod && lastDot <= 0) {
+            return null;
+        }
+        String qualifiedName = isMethod ? sqlId.substring(0, lastDot) : sqlId;
+        PsiClass[] candidates = JavaPsiFacade.getInstance(project).findClasses(qualifiedName, GlobalSearchScope.allScope(project));
+        PsiClass psiClass = Arrays.stream(candidates).filter(candidate -> {
+            VirtualFile virtualFile = getVirtualFile(candidate.getContainingFile());
+            return virtualFile != null && filePath.equals(virtualFile.getPath());
+        }).findFirst().orElse(candidates.length > 0 ? candidates[0] : null);
+        if (psiClass == null) {
+            LOG.debug(LOG_PREFIX + "未找到Java类: " + qualifiedName + " (文件: " + filePath + ")");
+            return null;
+        }
+        if (!isMethod) {
+            return psiClass;
+        }
+        PsiMethod[] methods = psiClass.findMethodsByName(sqlId.substring(lastDot + 1), false);
+        return methods.length > 0 ? methods[0] : null;
     }
 
     // ==========================================================================
@@ -190,22 +316,25 @@ public class TagLocator {
 
     @Nullable
     private static XmlTag findXmlTagByRange(@NotNull XmlFile xmlFile, int startOffset, int endOffset, @NotNull XmlElementInfo info) {
-        // 先尝试精确匹配
-        PsiElement elementAtOffset = xmlFile.findElementAt(startOffset);
-        if (elementAtOffset == null) {
-            LOG.debug(LOG_PREFIX + "XML偏移量[" + startOffset + "]处无元素 (文件: " + info.getFilePath() + ")");
+        XmlTagRanges tagRanges = getXmlTagRanges(xmlFile);
+        if (tagRanges.isEmpty()) {
+            LOG.debug(LOG_PREFIX + "XML文件中没有标签 (文件: " + info.getFilePath() + ")");
             return null;
         }
 
-        XmlTag targetTag = PsiTreeUtil.getParentOfType(elementAtOffset, XmlTag.class);
-        if (targetTag != null && isExactRangeMatch(targetTag.getTextRange(), startOffset, endOffset)) {
-            return targetTag;
+        // 先尝试精确匹配
+        int index = tagRanges.indexOfStart(startOffset);
+        if (index >= 0) {
+            XmlTag targetTag = tagRanges.getTag(index);
+            if (isExactRangeMatch(targetTag.getTextRange(), startOffset, endOffset)) {
+                return targetTag;
+            }
         }
 
         // 精确匹配失败，尝试范围匹配
-        LOG.debug(LOG_PREFIX + "XML精确偏移量匹配失败，尝试包含范围匹配: 预期[" + startOffset + "," + endOffset + "], 实际[" + (targetTag != null ? targetTag.getTextRange().getStartOffset() : "null") + "," + (targetTag != null ? targetTag.getTextRange().getEndOffset() : "null") + "] (文件: " + info.getFilePath() + ")");
+        LOG.debug(LOG_PREFIX + "XML精确偏移量匹配失败，尝试包含范围匹配: 预期[" + startOffset + "," + endOffset + "] (文件: " + info.getFilePath() + ")");
 
-        return findInnermostXmlTagContainingRange(xmlFile, startOffset, endOffset);
+        return tagRanges.findInnermostContaining(index, startOffset, endOffset);
     }
 
     /**
@@ -227,30 +356,76 @@ public class TagLocator {
     }
 
 
+    @NotNull
+    private static XmlTagRanges getXmlTagRanges(@NotNull XmlFile xmlFile) {
+        return CachedValuesManager.getCachedValue(xmlFile, XML_TAG_RANGES_KEY, () -> CachedValueProvider.Result.create(XmlTagRanges.build(xmlFile), xmlFile));
+    }
+
     /**
-     * 查找包含偏移量范围的最内层XmlTag
+     * XML 文件中所有标签按起始偏移量排序后的索引
      */
-    @Nullable
-    private static XmlTag findInnermostXmlTagContainingRange(@NotNull XmlFile xmlFile, int startOffset, int endOffset) {
-        XmlTag rootTag = xmlFile.getDocument() != null ? xmlFile.getDocument().getRootTag() : null;
-        if (rootTag == null) {
-            return null;
+    static final class XmlTagRanges {
+
+        private final int[] starts;
+        private final XmlTag[] tags;
+
+        private XmlTagRanges(int[] starts, XmlTag[] tags) {
+            this.starts = starts;
+            this.tags = tags;
+        }
+
+        static XmlTagRanges build(@NotNull XmlFile xmlFile) {
+            XmlTag rootTag = xmlFile.getRootTag();
+            if (rootTag == null) {
+                return new XmlTagRanges(new int[0], new XmlTag[0]);
+            }
+            List<XmlTag> allTags = new ArrayList<>();
+            allTags.add(rootTag);
+            allTags.addAll(PsiTreeUtil.findChildrenOfType(rootTag, XmlTag.class));
+            // 先序遍历得到的标签已按起始偏移量排序，这里再排序一次保证二分查找的前提
+            allTags.sort(Comparator.comparingInt(tag -> tag.getTextRange().getStartOffset()));
+            int[] starts = new int[allTags.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = allTags.get(i).getTextRange().getStartOffset();
+            }
+            return new XmlTagRanges(starts, allTags.toArray(new XmlTag[0]));
         }
 
-        Collection<XmlTag> allTags = PsiTreeUtil.findChildrenOfType(rootTag, XmlTag.class);
-        XmlTag bestMatch = null;
-        int smallestRange = Integer.MAX_VALUE;
-
-        for (XmlTag tag : allTags) {
-            TextRange range = tag.getTextRange();
-            if (range.contains(startOffset) && range.contains(endOffset)) {
-                int rangeSize = range.getLength();
-                if (rangeSize < smallestRange) {
-                    smallestRange = rangeSize;
-                    bestMatch = tag;
+        boolean isEmpty() {
+            return tags.length == 0;
+        }
+
+        /**
+         * 二分查找起始偏移量，语义同 {@link Arrays#binarySearch(int[], int)}
+         */
+        int indexOfStart(int startOffset) {
+            return Arrays.binarySearch(starts, startOffset);
+        }
+
+        XmlTag getTag(int index) {
+            return tags[index];
+        }
+
+        /**
+         * 查找包含偏移量范围的最内层XmlTag（不包含根标签）
+         * XML 标签严格嵌套：从起始偏移量不大于 startOffset 的最后一个标签开始，向上查找第一个包含整个范围的标签即可
+         *
+         * @param index {@link #indexOfStart(int)} 的返回值
+         */
+        @Nullable
+        XmlTag findInnermostContaining(int index, int startOffset, int endOffset) {
+            int candidate = index >= 0 ? index : -index - 2;
+            if (candidate < 0) {
+                return null;
+            }
+            XmlTag tag = tags[candidate];
+            while (tag != null && tag.getParentTag() != null) {
+                if (tag.getTextRange().containsRange(startOffset, endOffset)) {
+                    return tag;
                 }
+                tag = tag.getParentTag();
             }
+            return null;
         }
-        return bestMatch;
     }
 }
\ No newline at end of file
@@ -5,6 +5,9 @@ create table if not exists element_java
     element_type character varying not null,
     start_offset integer           not null,
     end_offset   integer           not null,
+    line_number  integer default 0 not null,
+    label        character varying,
+    file_name    character varying,
     index element_java_file_path (file_path),
     index element_java_element_type (element_type),
     UNIQUE INDEX idx_unique_java_element (sql_id, file_path, element_type, start_offset)
@@ -6,6 +6,9 @@ create table if not exists element_xml
     database_id  character varying not null,
     start_offset integer           not null,
     end_offset   integer           not null,
+    line_number  integer default 0 not null,
+    label        character varying,
+    file_name    character varying,
     index element_xml_file_path (file_path),
     index element_xml_tag_name (tag_name),
     index element_xml_database_id (database_id),
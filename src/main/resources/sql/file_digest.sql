@@ -2,5 +2,6 @@ create table if not exists file_digest
 (
     file_path character varying not null,
     digest    character varying not null,
+    parse_cost bigint default 0 not null,
     UNIQUE INDEX idx_unique_file_digest (file_path)
 )
\ No newline at end of file
@@ -0,0 +1,72 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.DataBaseManager;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.GCWatcher;
+import com.intellij.testFramework.HeavyPlatformTestCase;
+import com.intellij.testFramework.LeakHunter;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测试缓存子系统的生命周期：项目关闭后缓存服务、定时任务和数据源随之释放，不残留对项目的引用
+ */
+public class MyBatisCacheLifecycleTest extends HeavyPlatformTestCase {
+
+    /**
+     * 反复打开/关闭项目的次数
+     */
+    private static final int REOPEN_COUNT = 50;
+
+    /**
+     * 测试反复打开、使用、关闭项目后，项目及其缓存服务都能被回收
+     */
+    @Test
+    public void testReopenProjectDoesNotLeak() throws Exception {
+        Path projectDir = FileUtil.createTempDirectory("km-mybatis-lifecycle", null).toPath();
+        Files.createDirectories(projectDir.resolve(".idea"));
+
+        List<Object> released = new ArrayList<>();
+        for (int i = 0; i < REOPEN_COUNT; i++) {
+            // 每轮使用独立的父 Disposable，释放时关闭项目，测试本身不持有已关闭的项目
+            Disposable projectDisposable = Disposer.newDisposable("km-mybatis-lifecycle-" + i);
+            Project project = PlatformTestUtil.loadAndOpenProject(projectDir, projectDisposable);
+            try {
+                // 触发缓存子系统的全部项目服务：管理器（定时扫描、文件监听）、缓存、快照、代数、健康状态、数据源
+                MyBatisCacheManager cacheManager = MyBatisCacheManagerFactory.getRecommendedParser(project);
+                MyBatisCache cache = MyBatisCacheFactory.getRecommendedParser(project);
+                cache.getAllFileDigest();
+                cacheManager.getFileGeneration(projectDir.toString());
+
+                // 按项目隔离：同一项目内多次获取得到同一实例
+                assertSame(cacheManager, MyBatisCacheManagerFactory.getRecommendedParser(project));
+                assertSame(cache, MyBatisCacheFactory.getRecommendedParser(project));
+                assertTrue("数据源应处于可用状态", DataBaseManager.getInstance(project).isDataSourceActive());
+
+                released.add(project);
+                released.add(cacheManager);
+                released.add(cache);
+                released.add(MyBatisCacheSnapshot.getInstance(project));
+                released.add(MyBatisCacheHealth.getInstance(project));
+                released.add(DataBaseManager.getInstance(project));
+            } finally {
+                Disposer.dispose(projectDisposable);
+            }
+            assertTrue("项目关闭后应已释放", project.isDisposed());
+        }
+
+        // 关闭后的项目与缓存服务都应可以被回收
+        GCWatcher watcher = GCWatcher.tracking(released);
+        released.clear();
+        watcher.ensureCollected();
+        LeakHunter.checkProjectLeak();
+    }
+}
@@ -0,0 +1,161 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 缓存刷新并发协调（纯逻辑，不依赖 IDE）
+ */
+public class MyBatisRefreshCoordinatorTest {
+
+    private static final String FILE_A = "/project/src/main/java/UserMapper.java";
+    private static final String FILE_B = "/project/src/main/resources/UserMapper.xml";
+
+    @Test
+    public void testSupersededTicketIsSkipped() {
+        MyBatisRefreshCoordinator coordinator = new MyBatisRefreshCoordinator();
+        MyBatisRefreshCoordinator.Ticket older = coordinator.request(FILE_A);
+        MyBatisRefreshCoordinator.Ticket newer = coordinator.request(FILE_A);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertFalse(coordinator.runIncremental(older, List.of(FILE_A), runs::incrementAndGet));
+        assertTrue(coordinator.runIncremental(newer, List.of(FILE_A), runs::incrementAndGet));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testRequestsForOtherFilesDoNotSupersede() {
+        MyBatisRefreshCoordinator coordinator = new MyBatisRefreshCoordinator();
+        MyBatisRefreshCoordinator.Ticket ticket = coordinator.request(FILE_A);
+        coordinator.request(FILE_B);
+
+        assertTrue(coordinator.runIncremental(ticket, List.of(FILE_A, FILE_B), () -> {
+        }));
+    }
+
+    @Test
+    public void testObserveDoesNotSupersedeRequest() {
+        MyBatisRefreshCoordinator coordinator = new MyBatisRefreshCoordinator();
+        MyBatisRefreshCoordinator.Ticket requested = coordinator.request(FILE_A);
+        MyBatisRefreshCoordinator.Ticket observed = coordinator.observe(FILE_A);
+
+        assertTrue(coordinator.runIncremental(observed, List.of(FILE_A), () -> {
+        }));
+        assertTrue(coordinator.runIncremental(requested, List.of(FILE_A), () -> {
+        }));
+    }
+
+    @Test
+    public void testFullRefreshSupersedesPendingTickets() {
+        MyBatisRefreshCoordinator coordinator = new MyBatisRefreshCoordinator();
+        MyBatisRefreshCoordinator.Ticket ticket = coordinator.request(FILE_A);
+        long startEpoch = coordinator.currentEpoch();
+
+        coordinator.runExclusive(true, () -> {
+        });
+
+        assertTrue(coordinator.isPreempted(startEpoch));
+        assertFalse(coordinator.runIncremental(ticket, List.of(FILE_A), () -> {
+        }));
+        // 全量刷新之后的请求正常执行
+        assertTrue(coordinator.runIncremental(coordinator.request(FILE_A), List.of(FILE_A), () -> {
+        }));
+    }
+
+    @Test
+    public void testPartialFullRefreshKeepsPendingTickets() {
+        MyBatisRefreshCoordinator coordinator = new MyBatisRefreshCoordinator();
+        MyBatisRefreshCoordinator.Ticket ticket = coordinator.request(FILE_A);
+        long startEpoch = coordinator.currentEpoch();
+        AtomicBoolean preemptedDuringRefresh = new AtomicBoolean();
+
+        coordinator.runExclusive(false, () -> preemptedDuringRefresh.set(coordinator.isPreempted(startEpoch)));
+
+        assertTrue(preemptedDuringRefresh.get());
+        assertFalse(coordinator.isPreempted(startEpoch));
+        assertTrue(coordinator.runIncremental(ticket, List.of(FILE_A), () -> {
+        }));
+    }
+
+    @Test
+    public void testPlanIsRecomputedUnderLocks() {
+        MyBatisRefreshCoordinator coordinator = new MyBatisRefreshCoordinator();
+        // 第一次计算（加锁前）只涉及 A，加锁后关联关系已变为 A、B
+        List<Set<String>> plans = List.of(Set.of(FILE_A), Set.of(FILE_A, FILE_B), Set.of(FILE_A, FILE_B));
+        AtomicInteger planCount = new AtomicInteger();
+        List<Set<String>> executed = new ArrayList<>();
+
+        boolean refreshed = coordinator.runIncremental(coordinator.request(FILE_A), () -> plans.get(planCount.getAndIncrement()), Function.identity(), executed::add);
+
+        assertTrue(refreshed);
+        assertEquals(3, planCount.get());
+        assertEquals(List.of(Set.of(FILE_A, FILE_B)), executed);
+    }
+
+    @Test
+    public void testSameFileRefreshesAreMutuallyExclusive() throws Exception {
+        MyBatisRefreshCoordinator coordinator = new MyBatisRefreshCoordinator();
+        AtomicInteger active = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        runConcurrently(4, 500, i -> coordinator.runIncremental(coordinator.observe(FILE_A), List.of(FILE_A), () -> {
+            if (active.incrementAndGet() > 1) {
+                overlapped.set(true);
+            }
+            active.decrementAndGet();
+        }));
+        assertFalse(overlapped.get());
+    }
+
+    @Test
+    public void testLockOrderDoesNotDeadlock() throws Exception {
+        MyBatisRefreshCoordinator coordinator = new MyBatisRefreshCoordinator();
+        // 两组线程以相反的顺序传入同样的文件，锁按固定顺序获取时不会互相等待
+        runConcurrently(4, 2000, i -> {
+            Collection<String> paths = i % 2 == 0 ? List.of(FILE_A, FILE_B) : List.of(FILE_B, FILE_A);
+            return coordinator.runIncremental(coordinator.observe(FILE_A), paths, Thread::yield);
+        });
+    }
+
+    /**
+     * 多个线程同时执行，超时视为死锁
+     */
+    private static void runConcurrently(int threads, int iterations, Function<Integer, Boolean> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        assertTrue(task.apply(thread));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser;
 
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.TagLocator;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlFile;
@@ -9,8 +11,11 @@ import com.intellij.testFramework.fixtures.BasePlatformTestCase;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * 测试MyBatis XML解析器的功能
@@ -237,6 +242,78 @@ public class MyBatisXmlParserTest extends BasePlatformTestCase {
         assertNotSame("不同类型的解析器应该是不同的实例", defaultParser, enhancedParser);
     }
 
+    /**
+     * 测试流式解析器的结果与PSI解析器一致（id、标签名、databaseId 和偏移量）
+     */
+    @Test
+    public void testStreamParser_matchesPsiParser() {
+        // 加载有效的MyBatis文件
+        XmlFile validFile = (XmlFile) myFixture.configureByFile("UserMapper.xml");
+        Project project = validFile.getProject();
+        MyBatisXmlParser psiParser = MyBatisXmlParserFactory.createDefaultParser(project);
+        MyBatisXmlStreamParser streamParser = MyBatisXmlParserFactory.createStreamParser(project);
+
+        MyBatisXmlParser.MyBatisParseResult psiResult = psiParser.parse(validFile);
+        MyBatisXmlStreamParser.StreamParseResult streamResult = streamParser.parse(validFile.getVirtualFile());
+        assertNotNull("PSI解析结果不应该为null", psiResult);
+        assertNotNull("流式解析结果不应该为null", streamResult);
+
+        String namespace = psiResult.getNamespaceName();
+        assertEquals("命名空间应该一致", namespace, streamResult.getNamespaceName());
+
+        // 根 mapper 标签
+        XmlTag rootTag = psiResult.getRootMapper();
+        assertEquals("mapper 标签应该一致", describe(TagLocator.createXmlElementInfo(rootTag, namespace, "", rootTag.getName())), describe(streamResult.getMapper()));
+
+        // SQL语句
+        Set<String> expectedStatements = new HashSet<>();
+        for (Map.Entry<String, List<XmlTag>> entry : psiResult.getStatements().entrySet()) {
+            for (XmlTag tag : entry.getValue()) {
+                String databaseId = Objects.requireNonNullElse(tag.getAttributeValue("databaseId"), "");
+                expectedStatements.add(describe(TagLocator.createXmlElementInfo(tag, namespace + "." + entry.getKey(), databaseId, tag.getName())));
+            }
+        }
+        assertFalse("测试文件应该包含SQL语句", expectedStatements.isEmpty());
+        assertEquals("SQL语句应该一致", expectedStatements, describeAll(streamResult.getStatements()));
+
+        // SQL片段
+        Set<String> expectedFragments = new HashSet<>();
+        for (Map.Entry<String, XmlTag> entry : psiResult.getSqlFragments().entrySet()) {
+            expectedFragments.add(describe(TagLocator.createXmlElementInfo(entry.getValue(), namespace + "." + entry.getKey(), "", entry.getValue().getName())));
+        }
+        assertEquals("SQL片段应该一致", expectedFragments, describeAll(streamResult.getSqlFragments()));
+
+        // 结果映射
+        Set<String> expectedResultMaps = new HashSet<>();
+        for (Map.Entry<String, XmlTag> entry : psiResult.getResultMaps().entrySet()) {
+            expectedResultMaps.add(describe(TagLocator.createXmlElementInfo(entry.getValue(), namespace + "." + entry.getKey(), "", entry.getValue().getName())));
+        }
+        assertEquals("结果映射应该一致", expectedResultMaps, describeAll(streamResult.getResultMaps()));
+    }
+
+    /**
+     * 测试流式解析器对无效文件返回null
+     */
+    @Test
+    public void testStreamParser_invalidFile() {
+        XmlFile invalidFile = (XmlFile) myFixture.configureByFile("InvalidMapper.xml");
+        MyBatisXmlStreamParser streamParser = MyBatisXmlParserFactory.createStreamParser(invalidFile.getProject());
+
+        assertNull("无效的MyBatis文件应该返回null", streamParser.parse(invalidFile.getVirtualFile()));
+    }
+
+    private static Set<String> describeAll(List<XmlElementInfo> infos) {
+        Set<String> result = new HashSet<>();
+        for (XmlElementInfo info : infos) {
+            result.add(describe(info));
+        }
+        return result;
+    }
+
+    private static String describe(XmlElementInfo info) {
+        return info.getSqlId() + "|" + info.getTagName() + "|" + info.getDatabaseId() + "|" + info.getFilePath() + "|" + info.getStartOffset() + "-" + info.getEndOffset() + "|" + info.getLineNumber() + "|" + info.getLabel() + "|" + info.getFileName();
+    }
+
     @Override
     protected String getTestDataPath() {
         return "src/test/resources/cn/wx1998/kmerit/jetbrains/plugins/quickmybatis/parser/"; // 确保使用正确的测试数据路径
@@ -0,0 +1,140 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.provider;
+
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCache;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheFactory;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheManagerFactory;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.JavaElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.setting.MyPluginSettings;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util.TagLocator;
+import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.SyntaxTraverser;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 测量 3000 行 DAO 的 Java 行标记耗时
+ * <p>
+ * 生成一个 600 个方法（每个方法一次 SqlSession 调用）、共 3000 行的 DAO 和对应的 Mapper XML，写入缓存后
+ * 通过 {@link JavaLineMarkerProvider#collectSlowLineMarkers} 对整个文件计算一次行标记（与编辑器中的调用方式一致），
+ * 输出首次计算和重复计算的耗时。用到的接口在按批次计算行标记之前就已存在，可以在改动前后的提交上分别运行对比。
+ */
+public class JavaLineMarkerProviderPerformanceTest extends BasePlatformTestCase {
+
+    /**
+     * DAO 方法数，每个方法 5 行
+     */
+    private static final int METHOD_COUNT = 600;
+
+    /**
+     * 重复计算的次数
+     */
+    private static final int WARM_RUNS = 5;
+
+    private static final String NAMESPACE = "com.example.mapper.UserMapper";
+
+    private boolean nonBlockingGutter;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // 直接读取数据库，不经过内存快照的延迟预算（与改动前的行为一致）
+        nonBlockingGutter = MyPluginSettings.getInstance().isNonBlockingGutter();
+        MyPluginSettings.getInstance().setNonBlockingGutter(false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            MyPluginSettings.getInstance().setNonBlockingGutter(nonBlockingGutter);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    @Test
+    public void testGutterTimeOnLargeDao() {
+        myFixture.addFileToProject("org/apache/ibatis/session/SqlSession.java", "package org.apache.ibatis.session;\n\npublic interface SqlSession {\n    <T> T selectOne(String statement, Object parameter);\n}\n");
+        XmlFile xmlFile = (XmlFile) myFixture.addFileToProject("com/example/mapper/UserMapper.xml", buildMapperXml());
+        PsiFile daoFile = myFixture.addFileToProject("com/example/dao/UserDao.java", buildDao());
+        assertEquals(METHOD_COUNT * 5 + 6, daoFile.getText().split("\n", -1).length);
+
+        // 创建缓存管理器（激活缓存）并写入 XML statement 和 DAO 中的 SqlSession 调用
+        MyBatisCacheManagerFactory.getRecommendedParser(getProject());
+        MyBatisCache cache = MyBatisCacheFactory.getRecommendedParser(getProject());
+        List<XmlElementInfo> xmlRows = new ArrayList<>();
+        for (XmlTag statement : xmlFile.getRootTag().getSubTags()) {
+            xmlRows.add(TagLocator.createXmlElementInfo(statement, NAMESPACE + "." + statement.getAttributeValue("id"), "", statement.getName()));
+        }
+        cache.addXmlElementMapping(xmlRows);
+        List<JavaElementInfo> javaRows = new ArrayList<>();
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(daoFile, PsiMethodCallExpression.class)) {
+            javaRows.add(TagLocator.createJavaElementInfo(call, JavaService.parseExpression(call.getArgumentList().getExpressions()[0]), JavaService.TYPE_METHOD_CALL));
+        }
+        cache.addJavaElementMapping(javaRows);
+
+        List<PsiElement> elements = SyntaxTraverser.psiTraverser(daoFile).toList();
+        JavaLineMarkerProvider provider = new JavaLineMarkerProvider();
+
+        List<LineMarkerInfo<?>> markers = new ArrayList<>();
+        long coldNanos = System.nanoTime();
+        provider.collectSlowLineMarkers(elements, markers);
+        coldNanos = System.nanoTime() - coldNanos;
+        assertEquals("每个 SqlSession 调用一个行标记", METHOD_COUNT, markers.size());
+
+        long[] warmNanos = new long[WARM_RUNS];
+        for (int i = 0; i < WARM_RUNS; i++) {
+            List<LineMarkerInfo<?>> warmMarkers = new ArrayList<>();
+            warmNanos[i] = System.nanoTime();
+            provider.collectSlowLineMarkers(elements, warmMarkers);
+            warmNanos[i] = System.nanoTime() - warmNanos[i];
+            assertEquals(METHOD_COUNT, warmMarkers.size());
+        }
+        Arrays.sort(warmNanos);
+
+        // 测试框架的日志只在失败时输出，耗时直接打印到标准输出
+        System.out.println("[JavaLineMarkerProviderPerformanceTest] 3000 行 DAO，PSI 元素 " + elements.size() + " 个，行标记 " + markers.size() + " 个；首次计算 " + toMillis(coldNanos) + "ms，重复计算中位数 " + toMillis(warmNanos[WARM_RUNS / 2]) + "ms（最短 " + toMillis(warmNanos[0]) + "ms）");
+    }
+
+    private static String buildDao() {
+        StringBuilder text = new StringBuilder();
+        text.append("package com.example.dao;\n\n");
+        text.append("import org.apache.ibatis.session.SqlSession;\n\n");
+        text.append("public class UserDao {\n");
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            text.append("    public Object select").append(i).append("(Long id) {\n");
+            text.append("        SqlSession sqlSession = null;\n");
+            text.append("        return sqlSession.selectOne(\"").append(NAMESPACE).append(".select").append(i).append("\", id);\n");
+            text.append("    }\n\n");
+        }
+        text.append("}");
+        return text.toString();
+    }
+
+    private static String buildMapperXml() {
+        StringBuilder text = new StringBuilder();
+        text.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        text.append("<!DOCTYPE mapper PUBLIC \"-//mybatis.org//DTD Mapper 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-mapper.dtd\">\n");
+        text.append("<mapper namespace=\"").append(NAMESPACE).append("\">\n");
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            text.append("    <select id=\"select").append(i).append("\" resultType=\"map\">select * from user where id = #{id}</select>\n");
+        }
+        text.append("</mapper>\n");
+        return text.toString();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+}
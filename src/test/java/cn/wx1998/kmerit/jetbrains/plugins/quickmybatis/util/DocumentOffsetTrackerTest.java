@@ -0,0 +1,112 @@
+package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util;
+
+import com.intellij.openapi.util.TextRange;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 修改记录的偏移量平移（纯逻辑，不依赖 IDE）
+ */
+public class DocumentOffsetTrackerTest {
+
+    private static TextRange translate(DocumentOffsetTracker.ChangeLog changeLog, int start, int end) {
+        return changeLog.translate(start, end);
+    }
+
+    @Test
+    public void testNoChanges() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        assertEquals(new TextRange(20, 30), translate(changeLog, 20, 30));
+    }
+
+    @Test
+    public void testInsertBeforeRange() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        changeLog.add(10, 0, 3);
+        assertEquals(new TextRange(23, 33), translate(changeLog, 20, 30));
+        assertEquals(new TextRange(5, 8), translate(changeLog, 5, 8));
+    }
+
+    @Test
+    public void testInsertAtRangeBoundaries() {
+        // 插入点在起点上：起点跟随插入内容后移
+        DocumentOffsetTracker.ChangeLog atStart = new DocumentOffsetTracker.ChangeLog();
+        atStart.add(20, 0, 3);
+        assertEquals(new TextRange(23, 33), translate(atStart, 20, 30));
+        // 插入点在终点上：终点不跟随
+        DocumentOffsetTracker.ChangeLog atEnd = new DocumentOffsetTracker.ChangeLog();
+        atEnd.add(30, 0, 3);
+        assertEquals(new TextRange(20, 30), translate(atEnd, 20, 30));
+    }
+
+    @Test
+    public void testChangeAfterRange() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        changeLog.add(40, 5, 0);
+        assertEquals(new TextRange(20, 30), translate(changeLog, 20, 30));
+    }
+
+    @Test
+    public void testDeleteOverlappingStart() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        changeLog.add(15, 10, 0);
+        assertEquals(new TextRange(15, 20), translate(changeLog, 20, 30));
+    }
+
+    @Test
+    public void testReplaceInsideRange() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        changeLog.add(22, 2, 5);
+        assertEquals(new TextRange(20, 33), translate(changeLog, 20, 30));
+    }
+
+    @Test
+    public void testDeleteWholeRange() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        changeLog.add(10, 30, 0);
+        assertEquals(new TextRange(10, 10), translate(changeLog, 20, 30));
+    }
+
+    @Test
+    public void testReplaceAtDocumentStart() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        changeLog.add(0, 5, 2);
+        assertEquals(new TextRange(0, 2), translate(changeLog, 2, 4));
+        assertEquals(new TextRange(0, 7), translate(changeLog, 3, 10));
+    }
+
+    @Test
+    public void testSequentialChangesCompose() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        // 开头插入 5 个字符，再删除当前文档中的 [20, 23)（原文中的 [15, 18)）
+        changeLog.add(0, 0, 5);
+        changeLog.add(20, 3, 0);
+        assertEquals(new TextRange(15, 19), translate(changeLog, 10, 14));
+        assertEquals(new TextRange(32, 42), translate(changeLog, 30, 40));
+        assertEquals(new TextRange(20, 22), translate(changeLog, 16, 20));
+    }
+
+    @Test
+    public void testContinuousTypingDoesNotGrow() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        // 在同一位置连续输入，远超修改记录的上限
+        for (int i = 0; i < 10_000; i++) {
+            changeLog.add(5 + i, 0, 1);
+        }
+        assertEquals(new TextRange(10_010, 10_020), translate(changeLog, 10, 20));
+        assertEquals(new TextRange(10_005, 10_008), translate(changeLog, 5, 8));
+        assertEquals(new TextRange(0, 5), translate(changeLog, 0, 5));
+    }
+
+    @Test
+    public void testTooManySeparateChanges() {
+        DocumentOffsetTracker.ChangeLog changeLog = new DocumentOffsetTracker.ChangeLog();
+        // 每次修改都拆分出一个新区间，超过上限后不再平移
+        for (int i = 0; i < 6_000; i++) {
+            changeLog.add(i * 2, 1, 1);
+        }
+        assertNull(translate(changeLog, 20, 30));
+    }
+}
@@ -1,11 +1,17 @@
 package cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.util;
 
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.MyBatisCacheManagerDefault;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.JavaElementInfo;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.cache.info.XmlElementInfo;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.MyBatisXmlParser;
 import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.parser.MyBatisXmlParserFactory;
+import cn.wx1998.kmerit.jetbrains.plugins.quickmybatis.services.JavaService;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.testFramework.TestDataPath;
@@ -53,4 +59,75 @@ public class TagLocatorTest extends BasePlatformTestCase {
         });
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testXmlTagRanges_indexOfStart() {
+        XmlFile xmlFile = (XmlFile) myFixture.configureByFile("Test1Mapper.xml");
+
+        TagLocator.XmlTagRanges tagRanges = TagLocator.XmlTagRanges.build(xmlFile);
+
+        assertFalse(tagRanges.isEmpty());
+        XmlTag rootTag = xmlFile.getRootTag();
+        assertNotNull(rootTag);
+        for (XmlTag tag : rootTag.getSubTags()) {
+            int index = tagRanges.indexOfStart(tag.getTextRange().getStartOffset());
+            assertTrue(index >= 0);
+            assertEquals(tag, tagRanges.getTag(index));
+        }
+        // 不是任何标签起点的偏移量
+        int inside = rootTag.getSubTags()[0].getTextRange().getStartOffset() + 1;
+        assertTrue(tagRanges.indexOfStart(inside) < 0);
+    }
+
+    @Test
+    public void testXmlTagRanges_findInnermostContaining() {
+        XmlFile xmlFile = (XmlFile) myFixture.configureByFile("Test1Mapper.xml");
+        TagLocator.XmlTagRanges tagRanges = TagLocator.XmlTagRanges.build(xmlFile);
+        XmlTag rootTag = xmlFile.getRootTag();
+        assertNotNull(rootTag);
+        XmlTag statement = rootTag.getSubTags()[0];
+        TextRange statementRange = statement.getTextRange();
+
+        // 标签内部的范围：找到该标签
+        int start = statementRange.getStartOffset() + 1;
+        int end = statementRange.getEndOffset() - 1;
+        assertEquals(statement, tagRanges.findInnermostContaining(tagRanges.indexOfStart(start), start, end));
+
+        // 跨越两个语句的范围：只有根标签包含，不返回根标签
+        XmlTag next = rootTag.getSubTags()[1];
+        int acrossEnd = next.getTextRange().getStartOffset() + 1;
+        assertNull(tagRanges.findInnermostContaining(tagRanges.indexOfStart(start), start, acrossEnd));
+
+        // 第一个标签之前的范围
+        assertNull(tagRanges.findInnermostContaining(tagRanges.indexOfStart(0), 0, 1));
+    }
+
+    @Test
+    public void testXmlTagRanges_emptyFile() {
+        XmlFile xmlFile = (XmlFile) myFixture.configureByText("Empty.xml", "");
+
+        assertTrue(TagLocator.XmlTagRanges.build(xmlFile).isEmpty());
+    }
+
+    @Test
+    public void testStubJavaElementInfo_findByName() {
+        PsiJavaFile javaFile = (PsiJavaFile) myFixture.configureByText("UserMapper.java", "public interface UserMapper {\n    String selectById(Long id);\n    int insert(String name);\n}");
+        Project project = javaFile.getProject();
+        PsiClass psiClass = javaFile.getClasses()[0];
+        PsiMethod method = psiClass.findMethodsByName("selectById", false)[0];
+
+        JavaElementInfo classInfo = TagLocator.createStubJavaElementInfo(psiClass, "UserMapper", JavaService.TYPE_INTERFACE_CLASS);
+        JavaElementInfo methodInfo = TagLocator.createStubJavaElementInfo(method, "UserMapper.selectById", JavaService.TYPE_INTERFACE_METHOD);
+        assertNotNull(classInfo);
+        assertNotNull(methodInfo);
+
+        // 存根中没有偏移量，只记录名称和展示信息
+        assertFalse(methodInfo.hasOffset());
+        assertEquals("selectById(id)", methodInfo.getLabel());
+        assertEquals("UserMapper.java", methodInfo.getFileName());
+
+        // 跳转时按名称查找
+        assertEquals(psiClass, TagLocator.findJavaTagByInfo(classInfo, project));
+        assertEquals(method, TagLocator.findJavaTagByInfo(methodInfo, project));
+        assertNull(TagLocator.findJavaElementByName(project, methodInfo.getFilePath(), JavaService.TYPE_INTERFACE_METHOD, "UserMapper.missing"));
+    }
+}